@@ -0,0 +1,70 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the bulk operations over the whole map, with a
+ * {@code threshold} of {@code 1} running them in parallel on the common
+ * pool and a {@code threshold} of {@link Long#MAX_VALUE} running them
+ * sequentially on the calling thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkScanMapTest {
+  @Param(value = { "1000000", "10000000" })
+  private int size;
+
+  @Param(value = { "1", "9223372036854775807" })
+  private long threshold;
+
+  private SyncMap<Integer, Integer> map;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    this.map = SyncMap.hashmap(this.size);
+    for(int i = 0; i < this.size; i++) {
+      this.map.put(i, i);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long forEach() {
+    final LongAdder sum = new LongAdder();
+    this.map.forEach(this.threshold, (key, value) -> sum.add(value));
+    return sum.sum();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public long reduceValuesToLong() {
+    return this.map.reduceValuesToLong(this.threshold, Integer::longValue, 0L, Long::sum);
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Integer search() {
+    final Integer target = this.size - 1;
+    return this.map.search(this.threshold, (key, value) -> key.equals(target) ? value : null);
+  }
+}
@@ -0,0 +1,85 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the {@link ReadGenericMapTest} workload over the caching modes, to
+ * compare their read throughput with a plain sync map.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CacheReadMapTest {
+  @Param(value = { "SyncMap", "MaximumSize", "ExpireAfterWrite", "ExpireAfterAccess" })
+  private String implementation;
+
+  @Param(value = "100000")
+  private static int size = 100000;
+
+  private Map<String, Integer> map;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    final SyncMap.Builder<String, Integer> builder = SyncMap.<String, Integer>builder().initialCapacity(CacheReadMapTest.size);
+    if("MaximumSize".equalsIgnoreCase(this.implementation)) {
+      builder.maximumSize(CacheReadMapTest.size);
+    } else if("ExpireAfterWrite".equalsIgnoreCase(this.implementation)) {
+      builder.expireAfterWrite(1, TimeUnit.HOURS);
+    } else if("ExpireAfterAccess".equalsIgnoreCase(this.implementation)) {
+      builder.expireAfterAccess(1, TimeUnit.HOURS);
+    }
+    this.map = builder.build();
+
+    for(int i = 0; i < CacheReadMapTest.size; i++) {
+      final String key = String.valueOf(i);
+      this.map.put(key, i);
+    }
+
+    for(int i = 0; i < CacheReadMapTest.size; i++) {
+      final String key = String.valueOf(i);
+      this.map.get(key);
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomRead() {
+    for(int i = 0; i < CacheReadMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = (int) Math.ceil(random.nextDouble() * CacheReadMapTest.size);
+      this.map.get(String.valueOf(randNumber));
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomReadAndWrite() {
+    for(int i = 0; i < CacheReadMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = (int) Math.ceil(random.nextDouble() * CacheReadMapTest.size);
+      this.map.put(String.valueOf(randNumber), randNumber);
+      this.map.get(String.valueOf(randNumber));
+    }
+  }
+}
@@ -0,0 +1,94 @@
+package space.vectrix.flare.collection;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntMaps;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.fastutil.Int2IntSyncMap;
+import space.vectrix.flare.fastutil.Int2ObjectSyncMap;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntBinaryOperator;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CounterPrimitiveMapTest {
+  private static final IntBinaryOperator SUM = Integer::sum;
+
+  @Param(value = { "SynchronizedMap", "BoxedSyncMap", "SyncMap" })
+  private String implementation;
+
+  @Param(value = "100000")
+  private static int size = 100000;
+
+  private Int2IntMap map;
+
+  private Int2ObjectMap<Integer> boxed;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    if("SynchronizedMap".equalsIgnoreCase(this.implementation)) {
+      this.map = Int2IntMaps.synchronize(new Int2IntOpenHashMap());
+    } else if("BoxedSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.boxed = Int2ObjectSyncMap.hashmap();
+    } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = Int2IntSyncMap.hashmap();
+    }
+    for(int i = 0; i < CounterPrimitiveMapTest.size; i++) {
+      if(this.map != null) {
+        this.map.put(i, 0);
+      } else {
+        this.boxed.put(i, Integer.valueOf(0));
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomIncrement() {
+    for(int i = 0; i < CounterPrimitiveMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = random.nextInt(CounterPrimitiveMapTest.size);
+      if(this.map instanceof Int2IntSyncMap) {
+        ((Int2IntSyncMap) this.map).addTo(randNumber, 1);
+      } else if(this.map != null) {
+        this.map.mergeInt(randNumber, 1, CounterPrimitiveMapTest.SUM);
+      } else {
+        this.boxed.compute(randNumber, (key, value) -> value == null ? 1 : value + 1);
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomRead() {
+    for(int i = 0; i < CounterPrimitiveMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = random.nextInt(CounterPrimitiveMapTest.size);
+      if(this.map != null) {
+        this.map.get(randNumber);
+      } else {
+        this.boxed.get(randNumber);
+      }
+    }
+  }
+}
@@ -30,7 +30,7 @@ import java.util.concurrent.TimeUnit;
 @Measurement(iterations = 5, time = 4)
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class DirtyGenericMapTest {
-  @Param(value = { "SynchronizedMap", "ConcurrentHashMap", "SyncMap" })
+  @Param(value = { "SynchronizedMap", "ConcurrentHashMap", "SyncMap", "SharedSyncMap", "CombiningSyncMap", "StripedSyncMap" })
   private String implementation;
 
   @Param(value = "100000")
@@ -46,6 +46,12 @@ public class DirtyGenericMapTest {
       this.map = new ConcurrentHashMap<>();
     } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
       this.map = SyncMap.hashmap();
+    } else if("SharedSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.<String, Integer>builder().sharedDirtyReads().build();
+    } else if("CombiningSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.<String, Integer>builder().flatCombining().build();
+    } else if("StripedSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.striped(HashMap::new, 16, Runtime.getRuntime().availableProcessors());
     }
   }
 
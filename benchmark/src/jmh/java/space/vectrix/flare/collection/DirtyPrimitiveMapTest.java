@@ -29,7 +29,7 @@ import java.util.concurrent.TimeUnit;
 @Measurement(iterations = 5, time = 4)
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class DirtyPrimitiveMapTest {
-  @Param(value = { "SynchronizedMap", "SyncMap" })
+  @Param(value = { "SynchronizedMap", "SyncMap", "SharedSyncMap" })
   private String implementation;
 
   @Param(value = "100000")
@@ -43,6 +43,8 @@ public class DirtyPrimitiveMapTest {
       this.map = Int2ObjectMaps.synchronize(new Int2ObjectOpenHashMap<>());
     } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
       this.map = Int2ObjectSyncMap.hashmap();
+    } else if("SharedSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = Int2ObjectSyncMap.withSharedDirtyReads(Int2ObjectOpenHashMap::new, 16);
     }
   }
 
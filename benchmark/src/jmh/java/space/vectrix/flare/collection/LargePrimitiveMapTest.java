@@ -0,0 +1,90 @@
+package space.vectrix.flare.collection;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.fastutil.Long2ObjectSyncMap;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class LargePrimitiveMapTest {
+  private static final String VALUE = "value";
+
+  @Param(value = { "SyncMap", "FlatSyncMap", "OffHeapSyncMap" })
+  private String implementation;
+
+  @Param(value = "10000000")
+  private static int size = 10000000;
+
+  private Long2ObjectMap<String> map;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    this.map = this.create(LargePrimitiveMapTest.size);
+
+    // Every key shares the same value, so the heap only holds the map itself.
+    for(long i = 0; i < LargePrimitiveMapTest.size; i++) {
+      this.map.put(i * 31, LargePrimitiveMapTest.VALUE);
+    }
+  }
+
+  /**
+   * Times a full collection while the map is reachable, and records the
+   * heap it leaves in use, which for the off-heap map is only its slab of
+   * values, with a reference for each key rather than for each slot.
+   */
+  @Benchmark
+  public void fullCollection(final Footprint footprint) {
+    System.gc();
+    footprint.heapBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+  }
+
+  /**
+   * Times filling a map that starts out small, so it has to grow. The flat
+   * map copies every value into a larger array on the heap as it grows,
+   * while the off-heap map only moves its keys and handles.
+   */
+  @Benchmark
+  public Long2ObjectMap<String> grow() {
+    final Long2ObjectMap<String> map = this.create(0);
+    for(long i = 0; i < LargePrimitiveMapTest.size; i++) {
+      map.put(i * 31, LargePrimitiveMapTest.VALUE);
+    }
+    return map;
+  }
+
+  private Long2ObjectMap<String> create(final int capacity) {
+    if("SyncMap".equalsIgnoreCase(this.implementation)) {
+      return Long2ObjectSyncMap.hashmap(capacity);
+    } else if("FlatSyncMap".equalsIgnoreCase(this.implementation)) {
+      return Long2ObjectSyncMap.flat(capacity);
+    } else if("OffHeapSyncMap".equalsIgnoreCase(this.implementation)) {
+      return Long2ObjectSyncMap.offHeap(capacity);
+    }
+    throw new IllegalArgumentException(this.implementation);
+  }
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class Footprint {
+    public long heapBytes;
+  }
+}
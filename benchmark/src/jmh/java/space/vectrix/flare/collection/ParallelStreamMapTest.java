@@ -0,0 +1,82 @@
+package space.vectrix.flare.collection;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+import space.vectrix.flare.fastutil.Int2ObjectSyncMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures aggregating the values of a promoted map with a sequential and
+ * a parallel stream, which should scale with the available processors.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelStreamMapTest {
+  @Param(value = "1000000")
+  private int size;
+
+  private Map<Integer, Integer> genericMap;
+  private Map<Integer, Integer> stripedMap;
+  private Int2ObjectMap<Integer> primitiveMap;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    this.genericMap = SyncMap.hashmap(this.size);
+    this.stripedMap = SyncMap.striped(HashMap::new, this.size, Runtime.getRuntime().availableProcessors());
+    this.primitiveMap = Int2ObjectSyncMap.hashmap(this.size);
+    for(int i = 0; i < this.size; i++) {
+      this.genericMap.put(i, i);
+      this.stripedMap.put(i, i);
+      this.primitiveMap.put(i, Integer.valueOf(i));
+    }
+
+    // Promotes the entries to the read map.
+    this.genericMap.entrySet().iterator();
+    this.stripedMap.entrySet().forEach(entry -> {});
+    this.primitiveMap.int2ObjectEntrySet().iterator();
+  }
+
+  @Benchmark
+  public long genericSequential() {
+    return this.genericMap.values().stream().mapToLong(Integer::longValue).sum();
+  }
+
+  @Benchmark
+  public long genericParallel() {
+    return this.genericMap.values().parallelStream().mapToLong(Integer::longValue).sum();
+  }
+
+  @Benchmark
+  public long stripedParallel() {
+    return this.stripedMap.values().parallelStream().mapToLong(Integer::longValue).sum();
+  }
+
+  @Benchmark
+  public long primitiveSequential() {
+    return this.primitiveMap.values().stream().mapToLong(Integer::longValue).sum();
+  }
+
+  @Benchmark
+  public long primitiveParallel() {
+    return this.primitiveMap.values().parallelStream().mapToLong(Integer::longValue).sum();
+  }
+}
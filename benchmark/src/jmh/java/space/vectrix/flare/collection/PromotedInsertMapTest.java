@@ -0,0 +1,80 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of the first new key inserted after the map has been
+ * promoted, which is the insert that starts a new {@code dirty} map. The
+ * {@code p0.99} column of the sample time output is the one of interest.
+ * With {@code async}, the promotions are handed off to a background
+ * executor instead.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PromotedInsertMapTest {
+  @Param(value = { "100000", "1000000", "10000000" })
+  private int size;
+
+  @Param(value = { "false", "true" })
+  private boolean async;
+
+  private ExecutorService executor;
+  private Map<Integer, Integer> map;
+
+  private int next;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    final SyncMap.Builder<Integer, Integer> builder = SyncMap.<Integer, Integer>builder().initialCapacity(this.size);
+    if(this.async) {
+      this.executor = Executors.newSingleThreadExecutor();
+      builder.promotionExecutor(this.executor);
+    }
+    this.map = builder.build();
+    for(int i = 0; i < this.size; i++) {
+      this.map.put(i, i);
+    }
+    this.next = this.size;
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdown() {
+    if(this.executor != null) this.executor.shutdown();
+  }
+
+  @Setup(Level.Invocation)
+  public void promote() {
+    // Promotes the dirty map, so the next insert has to start a new one.
+    this.map.entrySet().iterator();
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Integer firstInsert() {
+    final int key = this.next++;
+    return this.map.put(key, key);
+  }
+}
@@ -0,0 +1,105 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the promotion policies on the scenarios of
+ * {@link DirtyGenericMapTest} (not populated) and {@link ReadGenericMapTest}
+ * (populated).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PromotionPolicyMapTest {
+  @Param(value = { "DirtySize", "MissRatio", "Misses", "Writes", "Elapsed" })
+  private String policy;
+
+  @Param(value = { "false", "true" })
+  private boolean populated;
+
+  @Param(value = "100000")
+  private static int size = 100000;
+
+  private Map<String, Integer> map;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    final SyncMap.PromotionPolicy promotionPolicy;
+    if("MissRatio".equalsIgnoreCase(this.policy)) {
+      promotionPolicy = SyncMap.PromotionPolicy.missRatio(0.1D);
+    } else if("Misses".equalsIgnoreCase(this.policy)) {
+      promotionPolicy = SyncMap.PromotionPolicy.misses(1000);
+    } else if("Writes".equalsIgnoreCase(this.policy)) {
+      promotionPolicy = SyncMap.PromotionPolicy.writes(1000);
+    } else if("Elapsed".equalsIgnoreCase(this.policy)) {
+      promotionPolicy = SyncMap.PromotionPolicy.elapsed(10, TimeUnit.MILLISECONDS);
+    } else {
+      promotionPolicy = SyncMap.PromotionPolicy.dirtySize();
+    }
+
+    this.map = SyncMap.of(HashMap::new, PromotionPolicyMapTest.size, promotionPolicy);
+
+    if(this.populated) {
+      for(int i = 0; i < PromotionPolicyMapTest.size; i++) {
+        this.map.put(String.valueOf(i), i);
+      }
+
+      for(int i = 0; i < PromotionPolicyMapTest.size; i++) {
+        this.map.get(String.valueOf(i));
+      }
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomWrite() {
+    for(int i = 0; i < PromotionPolicyMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = (int) Math.ceil(random.nextDouble() * PromotionPolicyMapTest.size);
+      this.map.put(String.valueOf(randNumber), randNumber);
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomRead() {
+    for(int i = 0; i < PromotionPolicyMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = (int) Math.ceil(random.nextDouble() * PromotionPolicyMapTest.size);
+      this.map.get(String.valueOf(randNumber));
+    }
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void randomReadAndWrite() {
+    for(int i = 0; i < PromotionPolicyMapTest.size; i++) {
+      final Random random = ThreadLocalRandom.current();
+      final int randNumber = (int) Math.ceil(random.nextDouble() * PromotionPolicyMapTest.size);
+      this.map.put(String.valueOf(randNumber), randNumber);
+      this.map.get(String.valueOf(randNumber));
+    }
+  }
+}
@@ -30,7 +30,7 @@ import java.util.concurrent.TimeUnit;
 @Measurement(iterations = 5, time = 4)
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class ReadGenericMapTest {
-  @Param(value = { "SynchronizedMap", "ConcurrentHashMap", "SyncMap" })
+  @Param(value = { "SynchronizedMap", "ConcurrentHashMap", "SyncMap", "FlatSyncMap" })
   private String implementation;
 
   @Param(value = "100000")
@@ -46,6 +46,8 @@ public class ReadGenericMapTest {
       this.map = new ConcurrentHashMap<>(ReadGenericMapTest.size);
     } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
       this.map = SyncMap.hashmap(ReadGenericMapTest.size);
+    } else if("FlatSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.flat(ReadGenericMapTest.size);
     }
 
     for(int i = 0; i < ReadGenericMapTest.size; i++) {
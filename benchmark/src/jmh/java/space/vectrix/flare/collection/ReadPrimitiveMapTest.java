@@ -29,7 +29,7 @@ import java.util.concurrent.TimeUnit;
 @Measurement(iterations = 5, time = 4)
 @OutputTimeUnit(TimeUnit.SECONDS)
 public class ReadPrimitiveMapTest {
-  @Param(value = { "SynchronizedMap", "SyncMap" })
+  @Param(value = { "SynchronizedMap", "SyncMap", "DenseSyncMap" })
   private String implementation;
 
   @Param(value = "100000")
@@ -43,6 +43,8 @@ public class ReadPrimitiveMapTest {
       this.map = Int2ObjectMaps.synchronize(new Int2ObjectOpenHashMap<>(ReadPrimitiveMapTest.size));
     } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
       this.map = Int2ObjectSyncMap.hashmap(ReadPrimitiveMapTest.size);
+    } else if("DenseSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = Int2ObjectSyncMap.dense(ReadPrimitiveMapTest.size + 1);
     }
 
     for(int i = 0; i < ReadPrimitiveMapTest.size; i++) {
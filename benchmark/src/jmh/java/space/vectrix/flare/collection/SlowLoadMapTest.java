@@ -0,0 +1,63 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Measures {@code computeIfAbsent} of new keys with a slow mapping function,
+ * which either holds the lock for the whole load or, with
+ * {@code singleFlight}, lets the loads of different keys run in parallel.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SlowLoadMapTest {
+  @Param(value = { "false", "true" })
+  private boolean singleFlight;
+
+  @Param(value = "1000000")
+  private long loadNanos;
+
+  private Map<Integer, Integer> map;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  private final Function<Integer, Integer> mappingFunction = key -> {
+    LockSupport.parkNanos(this.loadNanos);
+    return key;
+  };
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    final SyncMap.Builder<Integer, Integer> builder = SyncMap.builder();
+    if(this.singleFlight) builder.singleFlight();
+    this.map = builder.build();
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Integer newKey() {
+    return this.map.computeIfAbsent(this.next.getAndIncrement(), this.mappingFunction);
+  }
+}
@@ -0,0 +1,90 @@
+package space.vectrix.flare.collection;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import space.vectrix.flare.SyncMap;
+import space.vectrix.flare.fastutil.Int2ObjectSyncMap;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures iterating over the views of a promoted map. Run with
+ * {@code -prof gc}, the key and value iterations should only allocate
+ * the iterator itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ViewIterationMapTest {
+  @Param(value = "1000000")
+  private int size;
+
+  private Map<Integer, Integer> genericMap;
+  private Int2ObjectMap<Integer> primitiveMap;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    this.genericMap = SyncMap.hashmap(this.size);
+    this.primitiveMap = Int2ObjectSyncMap.hashmap(this.size);
+    for(int i = 0; i < this.size; i++) {
+      this.genericMap.put(i, i);
+      this.primitiveMap.put(i, Integer.valueOf(i));
+    }
+
+    // Promotes the entries to the read map.
+    this.genericMap.entrySet().iterator();
+    this.primitiveMap.int2ObjectEntrySet().iterator();
+  }
+
+  @Benchmark
+  public void genericEntries(final Blackhole blackhole) {
+    for(final Map.Entry<Integer, Integer> entry : this.genericMap.entrySet()) {
+      blackhole.consume(entry.getKey());
+    }
+  }
+
+  @Benchmark
+  public void genericKeys(final Blackhole blackhole) {
+    for(final Integer key : this.genericMap.keySet()) {
+      blackhole.consume(key);
+    }
+  }
+
+  @Benchmark
+  public void genericValues(final Blackhole blackhole) {
+    for(final Integer value : this.genericMap.values()) {
+      blackhole.consume(value);
+    }
+  }
+
+  @Benchmark
+  public void primitiveKeys(final Blackhole blackhole) {
+    for(final IntIterator iterator = this.primitiveMap.keySet().iterator(); iterator.hasNext(); ) {
+      blackhole.consume(iterator.nextInt());
+    }
+  }
+
+  @Benchmark
+  public void primitiveValues(final Blackhole blackhole) {
+    for(final Integer value : this.primitiveMap.values()) {
+      blackhole.consume(value);
+    }
+  }
+}
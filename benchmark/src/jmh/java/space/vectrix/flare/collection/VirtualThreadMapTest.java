@@ -0,0 +1,133 @@
+package space.vectrix.flare.collection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import space.vectrix.flare.SyncMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Runs the {@link DirtyGenericMapTest} workloads from many virtual threads
+ * at once, along with new keys loaded by a slow mapping function, which
+ * stalls the carrier threads if a thread waiting for the lock, or holding
+ * it, pins its carrier thread.
+ *
+ * <p>Requires a JDK with virtual threads, 21 or later.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class VirtualThreadMapTest {
+  @Param(value = { "SynchronizedMap", "ConcurrentHashMap", "SyncMap", "StripedSyncMap" })
+  private String implementation;
+
+  @Param(value = "10000")
+  private int threads;
+
+  @Param(value = "100")
+  private int operations;
+
+  @Param(value = "100000")
+  private long loadNanos;
+
+  private Map<String, Integer> map;
+
+  private ExecutorService executor;
+
+  private final AtomicInteger next = new AtomicInteger();
+
+  private final Function<String, Integer> mappingFunction = key -> {
+    LockSupport.parkNanos(this.loadNanos);
+    return key.length();
+  };
+
+  @Setup(Level.Trial)
+  public void createExecutor() throws ReflectiveOperationException {
+    // Looked up reflectively, so that the benchmarks still compile on the
+    // JDKs without virtual threads.
+    this.executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+  }
+
+  @Setup(Level.Iteration)
+  public void createImplementation() {
+    if("SynchronizedMap".equalsIgnoreCase(this.implementation)) {
+      this.map = Collections.synchronizedMap(new HashMap<>());
+    } else if("ConcurrentHashMap".equalsIgnoreCase(this.implementation)) {
+      this.map = new ConcurrentHashMap<>();
+    } else if("SyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.hashmap();
+    } else if("StripedSyncMap".equalsIgnoreCase(this.implementation)) {
+      this.map = SyncMap.striped(HashMap::new, 16, Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void shutdownExecutor() {
+    this.executor.shutdownNow();
+  }
+
+  @Benchmark
+  public void randomReadAndWrite() throws InterruptedException {
+    this.run(() -> {
+      for(int i = 0; i < this.operations; i++) {
+        final Random random = ThreadLocalRandom.current();
+        final int randNumber = (int) Math.ceil(random.nextDouble() * 100_000);
+        this.map.put(String.valueOf(randNumber), randNumber);
+        this.map.get(String.valueOf(randNumber));
+      }
+    });
+  }
+
+  @Benchmark
+  public void slowLoad() throws InterruptedException {
+    this.run(() -> {
+      for(int i = 0; i < this.operations; i++) {
+        if(i % 10 == 0) {
+          this.map.computeIfAbsent(String.valueOf(this.next.getAndIncrement()), this.mappingFunction);
+        } else {
+          this.map.get(String.valueOf(ThreadLocalRandom.current().nextInt(100_000)));
+        }
+      }
+    });
+  }
+
+  private void run(final Runnable task) throws InterruptedException {
+    final CountDownLatch latch = new CountDownLatch(this.threads);
+    for(int i = 0; i < this.threads; i++) {
+      this.executor.execute(() -> {
+        try {
+          task.run();
+        } finally {
+          latch.countDown();
+        }
+      });
+    }
+    latch.await();
+  }
+}
@@ -0,0 +1,122 @@
+package space.vectrix.flare.collection;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import space.vectrix.flare.SyncMap;
+import space.vectrix.flare.fastutil.Int2ObjectSyncMap;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Measures the write operations that go through the entry protocol on
+ * keys already present in the read map. Run with {@code -prof gc}, the
+ * {@code gc.alloc.rate.norm} of each benchmark should be {@code 0 B/op}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@Fork(1)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 4)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class WritePathAllocationTest {
+  @Param(value = "100000")
+  private static int size = 100000;
+
+  private Integer[] keys;
+  private Map<Integer, Integer> genericMap;
+  private Int2ObjectMap<Integer> primitiveMap;
+
+  private final Function<Integer, Integer> mappingFunction = key -> key;
+  private final IntFunction<Integer> primitiveMappingFunction = key -> key;
+  private final BiFunction<Integer, Integer, Integer> remappingFunction = (key, value) -> value;
+
+  @Setup(Level.Trial)
+  public void createImplementation() {
+    this.keys = new Integer[WritePathAllocationTest.size];
+    this.genericMap = SyncMap.hashmap(WritePathAllocationTest.size);
+    this.primitiveMap = Int2ObjectSyncMap.hashmap(WritePathAllocationTest.size);
+    for(int i = 0; i < WritePathAllocationTest.size; i++) {
+      this.keys[i] = i;
+      this.genericMap.put(this.keys[i], this.keys[i]);
+      this.primitiveMap.put(i, this.keys[i]);
+    }
+
+    // Promotes the entries to the read map.
+    this.genericMap.entrySet().iterator();
+    this.primitiveMap.int2ObjectEntrySet().iterator();
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void genericPutIfAbsent(final Blackhole blackhole) {
+    final Integer key = this.keys[ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size)];
+    blackhole.consume(this.genericMap.putIfAbsent(key, key));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void genericComputeIfAbsent(final Blackhole blackhole) {
+    final Integer key = this.keys[ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size)];
+    blackhole.consume(this.genericMap.computeIfAbsent(key, this.mappingFunction));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void genericComputeIfPresent(final Blackhole blackhole) {
+    final Integer key = this.keys[ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size)];
+    blackhole.consume(this.genericMap.computeIfPresent(key, this.remappingFunction));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void genericCompute(final Blackhole blackhole) {
+    final Integer key = this.keys[ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size)];
+    blackhole.consume(this.genericMap.compute(key, this.remappingFunction));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void primitivePutIfAbsent(final Blackhole blackhole) {
+    final int key = ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size);
+    blackhole.consume(this.primitiveMap.putIfAbsent(key, this.keys[key]));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void primitiveComputeIfAbsent(final Blackhole blackhole) {
+    final int key = ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size);
+    blackhole.consume(this.primitiveMap.computeIfAbsent(key, this.primitiveMappingFunction));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void primitiveComputeIfPresent(final Blackhole blackhole) {
+    final int key = ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size);
+    blackhole.consume(this.primitiveMap.computeIfPresent(key, this.remappingFunction));
+  }
+
+  @Benchmark
+  @Threads(5)
+  public void primitiveCompute(final Blackhole blackhole) {
+    final int key = ThreadLocalRandom.current().nextInt(WritePathAllocationTest.size);
+    blackhole.consume(this.primitiveMap.compute(key, this.remappingFunction));
+  }
+}
@@ -25,13 +25,45 @@ sourceSets {
   main {
     templates.templateSets.register("primitive") {
       dataFiles.from(files("src/templateData/primitive.yaml"))
-      variants("double", "float", "int", "long", "short")
+      variants("byte", "char", "double", "float", "int", "long", "short")
+    }
+    templates.templateSets.register("direct") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("byte", "char")
+    }
+    templates.templateSets.register("dense") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("int")
+    }
+    templates.templateSets.register("offheap") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("long")
+    }
+    templates.templateSets.register("value") {
+      dataFiles.from(files("src/templateData/value.yaml"))
+      variants("int2int", "int2long", "long2int", "long2long", "object2int", "object2long")
     }
   }
   test {
     templates.templateSets.register("primitive") {
       dataFiles.from(files("src/templateData/primitive.yaml"))
-      variants("double", "float", "int", "long", "short")
+      variants("byte", "char", "double", "float", "int", "long", "short")
+    }
+    templates.templateSets.register("direct") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("byte", "char")
+    }
+    templates.templateSets.register("dense") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("int")
+    }
+    templates.templateSets.register("offheap") {
+      dataFiles.from(files("src/templateData/primitive.yaml"))
+      variants("long")
+    }
+    templates.templateSets.register("value") {
+      dataFiles.from(files("src/templateData/value.yaml"))
+      variants("int2int", "int2long", "long2int", "long2long", "object2int", "object2long")
     }
   }
   configureEach {
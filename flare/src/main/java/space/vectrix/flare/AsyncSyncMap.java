@@ -0,0 +1,148 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * A concurrent map of asynchronously computed values, backed by a
+ * {@link SyncMap} holding a {@link CompletableFuture} for each key.
+ *
+ * <p>A future is stored as soon as its computation starts, so concurrent
+ * loads of the same key share a single future. Once the key has been
+ * promoted to the {@code read} map, its future is served without taking
+ * a lock, whether it is completed or still in progress.</p>
+ *
+ * <p>Futures that complete exceptionally or with a {@code null} value are
+ * removed from the map automatically, so the next load of the key starts
+ * a new computation.</p>
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ * @since 2.1.0
+ */
+public interface AsyncSyncMap<K, V> {
+  /**
+   * Returns a new async sync map, backed by a {@link HashMap}.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return an async sync map
+   * @since 2.1.0
+   */
+  @SuppressWarnings("RedundantTypeArguments")
+  static <K, V> @NonNull AsyncSyncMap<K, V> hashmap() {
+    return of(HashMap<K, SyncMap.ExpungingEntry<CompletableFuture<V>>>::new, 16);
+  }
+
+  /**
+   * Returns a new async sync map, backed by a {@link HashMap} with a
+   * provided initial capacity.
+   *
+   * @param initialCapacity the initial capacity of the hash map
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return an async sync map
+   * @since 2.1.0
+   */
+  @SuppressWarnings("RedundantTypeArguments")
+  static <K, V> @NonNull AsyncSyncMap<K, V> hashmap(final int initialCapacity) {
+    return of(HashMap<K, SyncMap.ExpungingEntry<CompletableFuture<V>>>::new, initialCapacity);
+  }
+
+  /**
+   * Returns a new async sync map, backed by the provided {@link Map}
+   * implementation with a provided initial capacity.
+   *
+   * @param function the map creation function
+   * @param initialCapacity the map initial capacity
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return an async sync map
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull AsyncSyncMap<K, V> of(final @NonNull IntFunction<Map<K, SyncMap.ExpungingEntry<CompletableFuture<V>>>> function, final int initialCapacity) {
+    return new AsyncSyncMapImpl<>(SyncMap.of(function, initialCapacity));
+  }
+
+  /**
+   * Returns the future of the provided key, or {@code null} if there is
+   * none.
+   *
+   * @param key the key
+   * @return the future, or null if there is none
+   * @since 2.1.0
+   */
+  @Nullable CompletableFuture<V> get(final @Nullable Object key);
+
+  /**
+   * Returns the future of the provided key, starting a new computation with
+   * the provided loader if there is none.
+   *
+   * <p>The loader is called at most once at a time for each key, without
+   * holding a lock, and the concurrent callers for the same key receive
+   * the same future. If the loader throws an exception, the returned future
+   * completes exceptionally with it.</p>
+   *
+   * @param key the key
+   * @param loader the loader, returning the future of the value
+   * @return the future
+   * @since 2.1.0
+   */
+  @NonNull CompletableFuture<V> getOrLoad(final @Nullable K key, final @NonNull Function<? super K, ? extends CompletableFuture<? extends V>> loader);
+
+  /**
+   * Sets the future of the provided key, replacing any previous future.
+   *
+   * @param key the key
+   * @param future the future
+   * @since 2.1.0
+   */
+  void put(final @Nullable K key, final @NonNull CompletableFuture<? extends V> future);
+
+  /**
+   * Returns a view of this map with the values of its futures.
+   *
+   * <p>Retrieving a value waits for the future of the key to complete,
+   * treating a future that completes exceptionally as absent, while the
+   * iterators only return the values of the futures that have already
+   * completed. {@link SyncMap#computeIfAbsent(Object, Function)} instead
+   * rethrows the exception of the mapping function, or of the load it
+   * waits for. The {@link SyncMap#size()} of the view includes the futures
+   * that are still in progress. Changes to the view are written through as
+   * completed futures.</p>
+   *
+   * @return a synchronous view
+   * @since 2.1.0
+   */
+  @NonNull SyncMap<K, V> synchronous();
+}
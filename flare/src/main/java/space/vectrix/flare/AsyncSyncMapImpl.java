@@ -0,0 +1,508 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/* package */ final class AsyncSyncMapImpl<K, V> implements AsyncSyncMap<K, V> {
+  /**
+   * The sync map holding the futures, which serves them from its
+   * {@code read} map as usual.
+   */
+  private transient final SyncMap<K, CompletableFuture<V>> delegate;
+
+  private transient SynchronousView synchronous;
+
+  /* package */ AsyncSyncMapImpl(final @NonNull SyncMap<K, CompletableFuture<V>> delegate) {
+    this.delegate = delegate;
+  }
+
+  @Override
+  public @Nullable CompletableFuture<V> get(final @Nullable Object key) {
+    return this.delegate.get(key);
+  }
+
+  @Override
+  public @NonNull CompletableFuture<V> getOrLoad(final @Nullable K key, final @NonNull Function<? super K, ? extends CompletableFuture<? extends V>> loader) {
+    requireNonNull(loader, "loader");
+    final CompletableFuture<V> existing = this.delegate.get(key);
+    if(existing != null) return existing;
+    // The future is inserted before the loader is called, so that the
+    // concurrent loads of the key share it.
+    final CompletableFuture<V> future = new CompletableFuture<>();
+    final CompletableFuture<V> previous = this.delegate.putIfAbsent(key, future);
+    if(previous != null) return previous;
+    this.removeOnFailure(key, future);
+    try {
+      requireNonNull(loader.apply(key), "future").whenComplete((value, exception) -> {
+        if(exception != null) {
+          future.completeExceptionally(exception);
+        } else {
+          future.complete(value);
+        }
+      });
+    } catch(final Throwable throwable) {
+      future.completeExceptionally(throwable);
+    }
+    return future;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void put(final @Nullable K key, final @NonNull CompletableFuture<? extends V> future) {
+    requireNonNull(future, "future");
+    // The future is only ever read from, so it is stored as is.
+    final CompletableFuture<V> value = (CompletableFuture<V>) future;
+    this.delegate.put(key, value);
+    this.removeOnFailure(key, value);
+  }
+
+  @Override
+  public @NonNull SyncMap<K, V> synchronous() {
+    if(this.synchronous != null) return this.synchronous;
+    return this.synchronous = new SynchronousView();
+  }
+
+  private void removeOnFailure(final @Nullable K key, final @NonNull CompletableFuture<V> future) {
+    future.whenComplete((value, exception) -> {
+      // Only removes the key if it still maps to this future.
+      if(exception != null || value == null) this.delegate.remove(key, future);
+    });
+  }
+
+  /**
+   * Returns the value of the future, waiting for it to complete, or
+   * {@code null} if it completed exceptionally.
+   *
+   * <p>This is used for the previous values of the writes, where a failed
+   * future is treated as absent, the same as {@link SynchronousView#get(Object)}
+   * does, and is about to be removed.</p>
+   */
+  private static <V> @Nullable V join(final @Nullable CompletableFuture<V> future) {
+    if(future == null) return null;
+    try {
+      return future.join();
+    } catch(final CompletionException | CancellationException exception) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns the value of the future, waiting for it to complete, and
+   * rethrows the exception it completed with.
+   */
+  private static <V> @Nullable V await(final @NonNull CompletableFuture<V> future) {
+    try {
+      return future.join();
+    } catch(final CompletionException exception) {
+      final Throwable cause = exception.getCause();
+      if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if(cause instanceof Error) throw (Error) cause;
+      throw exception;
+    }
+  }
+
+  /**
+   * Returns the value of the future if it has completed successfully,
+   * otherwise {@code null}, without waiting for it.
+   */
+  private static <V> @Nullable V now(final @NonNull CompletableFuture<V> future) {
+    if(!future.isDone() || future.isCompletedExceptionally()) return null;
+    return future.join();
+  }
+
+  /* package */ final class SynchronousView extends AbstractMap<K, V> implements SyncMap<K, V> {
+    private transient EntrySetView entrySet;
+
+    private transient KeySetView keySet;
+
+    private transient ValuesView values;
+
+    // Query Operations
+
+    @Override
+    public int size() {
+      return AsyncSyncMapImpl.this.delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return AsyncSyncMapImpl.this.delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(final @Nullable Object key) {
+      return this.get(key) != null;
+    }
+
+    @Override
+    public @Nullable V get(final @Nullable Object key) {
+      return AsyncSyncMapImpl.join(AsyncSyncMapImpl.this.delegate.get(key));
+    }
+
+    @Override
+    public @NonNull V getOrDefault(final @Nullable Object key, final @NonNull V defaultValue) {
+      requireNonNull(defaultValue, "defaultValue");
+      final V value = this.get(key);
+      return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public @Nullable V computeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
+      requireNonNull(mappingFunction, "mappingFunction");
+      return AsyncSyncMapImpl.await(AsyncSyncMapImpl.this.getOrLoad(key, k -> CompletableFuture.completedFuture(mappingFunction.apply(k))));
+    }
+
+    @Override
+    public @Nullable V putIfAbsent(final @Nullable K key, final @NonNull V value) {
+      requireNonNull(value, "value");
+      final CompletableFuture<V> future = CompletableFuture.completedFuture(value);
+      for(; ; ) {
+        final CompletableFuture<V> previous = AsyncSyncMapImpl.this.delegate.putIfAbsent(key, future);
+        if(previous == null) return null;
+        final V previousValue = AsyncSyncMapImpl.join(previous);
+        if(previousValue != null) return previousValue;
+        // The previous future failed, but has not been removed yet.
+        if(AsyncSyncMapImpl.this.delegate.replace(key, previous, future)) return null;
+      }
+    }
+
+    @Override
+    public @Nullable V put(final @Nullable K key, final @NonNull V value) {
+      requireNonNull(value, "value");
+      return AsyncSyncMapImpl.join(AsyncSyncMapImpl.this.delegate.put(key, CompletableFuture.completedFuture(value)));
+    }
+
+    @Override
+    public @Nullable V remove(final @Nullable Object key) {
+      return AsyncSyncMapImpl.join(AsyncSyncMapImpl.this.delegate.remove(key));
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key, final @NonNull Object value) {
+      requireNonNull(value, "value");
+      for(; ; ) {
+        final CompletableFuture<V> future = AsyncSyncMapImpl.this.delegate.get(key);
+        if(future == null || !Objects.equals(AsyncSyncMapImpl.join(future), value)) return false;
+        if(AsyncSyncMapImpl.this.delegate.remove(key, future)) return true;
+      }
+    }
+
+    @Override
+    public @Nullable V replace(final @Nullable K key, final @NonNull V value) {
+      requireNonNull(value, "value");
+      final CompletableFuture<V> newFuture = CompletableFuture.completedFuture(value);
+      for(; ; ) {
+        final CompletableFuture<V> future = AsyncSyncMapImpl.this.delegate.get(key);
+        final V previous;
+        if(future == null || (previous = AsyncSyncMapImpl.join(future)) == null) return null;
+        if(AsyncSyncMapImpl.this.delegate.replace(key, future, newFuture)) return previous;
+      }
+    }
+
+    @Override
+    public boolean replace(final @Nullable K key, final @NonNull V oldValue, final @NonNull V newValue) {
+      requireNonNull(oldValue, "oldValue");
+      requireNonNull(newValue, "newValue");
+      final CompletableFuture<V> newFuture = CompletableFuture.completedFuture(newValue);
+      for(; ; ) {
+        final CompletableFuture<V> future = AsyncSyncMapImpl.this.delegate.get(key);
+        if(future == null || !Objects.equals(AsyncSyncMapImpl.join(future), oldValue)) return false;
+        if(AsyncSyncMapImpl.this.delegate.replace(key, future, newFuture)) return true;
+      }
+    }
+
+    // Bulk Operations
+
+    @Override
+    public void clear() {
+      AsyncSyncMapImpl.this.delegate.clear();
+    }
+
+    // Stats
+
+    @Override
+    public @NonNull Stats stats() {
+      return AsyncSyncMapImpl.this.delegate.stats();
+    }
+
+    // Views
+
+    @Override
+    public @NonNull Set<Entry<K, V>> entrySet() {
+      if(this.entrySet != null) return this.entrySet;
+      return this.entrySet = new EntrySetView();
+    }
+
+    @Override
+    public @NonNull Set<K> keySet() {
+      if(this.keySet != null) return this.keySet;
+      return this.keySet = new KeySetView();
+    }
+
+    @Override
+    public @NonNull Collection<V> values() {
+      if(this.values != null) return this.values;
+      return this.values = new ValuesView();
+    }
+  }
+
+  /* package */ final class MapEntry implements Map.Entry<K, V> {
+    private final K key;
+    private V value;
+
+    /* package */ MapEntry(final @Nullable K key, final @NonNull V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public @Nullable K getKey() {
+      return this.key;
+    }
+
+    @Override
+    public @NonNull V getValue() {
+      return this.value;
+    }
+
+    @Override
+    public @Nullable V setValue(final @NonNull V value) {
+      requireNonNull(value, "value");
+      final V previous = AsyncSyncMapImpl.this.synchronous().put(this.key, value);
+      this.value = value;
+      return previous;
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return "AsyncSyncMapImpl.MapEntry{key=" + this.getKey() + ", value=" + this.getValue() + "}";
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if(this == other) return true;
+      if(!(other instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> that = (Map.Entry<?, ?>) other;
+      return Objects.equals(this.getKey(), that.getKey())
+        && Objects.equals(this.getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.getKey(), this.getValue());
+    }
+  }
+
+  /* package */ final class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return AsyncSyncMapImpl.this.delegate.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Map.Entry<?, ?>) entry;
+      final V value = AsyncSyncMapImpl.this.synchronous().get(mapEntry.getKey());
+      return value != null && Objects.equals(value, mapEntry.getValue());
+    }
+
+    @Override
+    public boolean add(final Map.@NonNull Entry<K, V> entry) {
+      requireNonNull(entry, "entry");
+      return AsyncSyncMapImpl.this.synchronous().put(entry.getKey(), entry.getValue()) == null;
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Map.Entry<?, ?>) entry;
+      return AsyncSyncMapImpl.this.synchronous().remove(mapEntry.getKey(), mapEntry.getValue());
+    }
+
+    @Override
+    public void clear() {
+      AsyncSyncMapImpl.this.delegate.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<Map.Entry<K, V>> spliterator() {
+      // The size includes the futures that have not completed, which are
+      // skipped, so it is not reported.
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.NONNULL | Spliterator.DISTINCT | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return AsyncSyncMapImpl.this.delegate.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object key) {
+      return AsyncSyncMapImpl.this.synchronous().containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key) {
+      return AsyncSyncMapImpl.this.synchronous().remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      AsyncSyncMapImpl.this.delegate.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<K> spliterator() {
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.DISTINCT | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return AsyncSyncMapImpl.this.delegate.size();
+    }
+
+    @Override
+    public void clear() {
+      AsyncSyncMapImpl.this.delegate.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<V> spliterator() {
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.NONNULL | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class EntryIterator extends ViewIterator<Map.Entry<K, V>> {
+    @Override
+    /* package */ Map.@NonNull Entry<K, V> element(final @Nullable K key, final @NonNull V value) {
+      return new MapEntry(key, value);
+    }
+  }
+
+  /* package */ final class KeyIterator extends ViewIterator<K> {
+    @Override
+    /* package */ @Nullable K element(final @Nullable K key, final @NonNull V value) {
+      return key;
+    }
+  }
+
+  /* package */ final class ValueIterator extends ViewIterator<V> {
+    @Override
+    /* package */ @NonNull V element(final @Nullable K key, final @NonNull V value) {
+      return value;
+    }
+  }
+
+  /* package */ abstract class ViewIterator<T> implements Iterator<T> {
+    private final Iterator<Map.Entry<K, CompletableFuture<V>>> backingIterator = AsyncSyncMapImpl.this.delegate.entrySet().iterator();
+    private K nextKey;
+    private V nextValue;
+    private K currentKey;
+    private boolean current;
+
+    /* package */ ViewIterator() {
+      this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.nextValue != null;
+    }
+
+    @Override
+    public T next() {
+      final K key = this.nextKey;
+      final V value;
+      if((value = this.nextValue) == null) throw new NoSuchElementException();
+      this.currentKey = key;
+      this.current = true;
+      this.advance();
+      return this.element(key, value);
+    }
+
+    @Override
+    public void remove() {
+      if(!this.current) throw new IllegalStateException();
+      this.current = false;
+      AsyncSyncMapImpl.this.delegate.remove(this.currentKey);
+    }
+
+    /* package */ abstract T element(final @Nullable K key, final @NonNull V value);
+
+    private void advance() {
+      this.nextKey = null;
+      this.nextValue = null;
+      while(this.backingIterator.hasNext()) {
+        final Map.Entry<K, CompletableFuture<V>> entry = this.backingIterator.next();
+        final V value;
+        if((value = AsyncSyncMapImpl.now(entry.getValue())) != null) {
+          this.nextKey = entry.getKey();
+          this.nextValue = value;
+          return;
+        }
+      }
+    }
+  }
+}
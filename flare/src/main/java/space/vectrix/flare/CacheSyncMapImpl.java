@@ -0,0 +1,665 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+import static java.util.Objects.requireNonNull;
+
+/* package */ final class CacheSyncMapImpl<K, V> extends AbstractMap<K, V> implements SyncMap<K, V> {
+  /**
+   * The amount of entries sampled for each eviction.
+   */
+  private static final int SAMPLE_SIZE = 8;
+
+  /**
+   * The nanoseconds an access time is kept for before it is updated again,
+   * so that frequently read entries are not written to on every read.
+   */
+  private static final long ACCESS_GRANULARITY = TimeUnit.MILLISECONDS.toNanos(1);
+
+  /**
+   * The sync map holding the cache nodes, which serves the reads from its
+   * {@code read} map as usual.
+   */
+  private transient final SyncMap<K, Node<V>> delegate;
+
+  /**
+   * The lock held while evicting, which is never taken by the reads. A
+   * writer that finds it held leaves the eviction to the thread holding it,
+   * rather than parking behind it.
+   */
+  private transient final ReentrantLock evictionLock = new ReentrantLock();
+
+  private transient final long maximumSize;
+
+  private transient final long expireAfterWrite;
+
+  private transient final long expireAfterAccess;
+
+  private transient final LongSupplier ticker;
+
+  /**
+   * Whether the mappings expire, otherwise the {@code ticker} is never read
+   * and the access times are taken from the {@code clock} instead.
+   */
+  private transient final boolean expiring;
+
+  /**
+   * The minimum difference between access times before a newer one is
+   * recorded.
+   */
+  private transient final long accessGranularity;
+
+  /**
+   * A logical clock advanced by the insertions, which orders the accesses
+   * of a map that does not expire its mappings without reading the time
+   * on each read.
+   */
+  private transient final AtomicLong clock = new AtomicLong();
+
+  /**
+   * The iterator over the {@code delegate} entries the eviction samples
+   * are taken from, resumed by each eviction and restarted once exhausted.
+   */
+  private transient Iterator<Map.Entry<K, Node<V>>> hand;
+
+  private transient EntrySetView entrySet;
+
+  private transient KeySetView keySet;
+
+  private transient ValuesView values;
+
+  /* package */ CacheSyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder) {
+    this.delegate = builder.<Node<V>>delegate().build();
+    this.maximumSize = builder.maximumSize;
+    this.expireAfterWrite = builder.expireAfterWrite;
+    this.expireAfterAccess = builder.expireAfterAccess;
+    this.ticker = builder.ticker;
+    this.expiring = this.expireAfterWrite >= 0 || this.expireAfterAccess >= 0;
+    this.accessGranularity = this.expiring ? CacheSyncMapImpl.ACCESS_GRANULARITY : 1;
+  }
+
+  // Query Operations
+
+  @Override
+  public int size() {
+    return this.delegate.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.delegate.isEmpty();
+  }
+
+  @Override
+  public boolean containsKey(final @Nullable Object key) {
+    return this.get(key) != null;
+  }
+
+  @Override
+  public @Nullable V get(final @Nullable Object key) {
+    final Node<V> node = this.delegate.get(key);
+    return node != null ? this.read(key, node, this.now()) : null;
+  }
+
+  @Override
+  public @NonNull V getOrDefault(final @Nullable Object key, final @NonNull V defaultValue) {
+    requireNonNull(defaultValue, "defaultValue");
+    final V value = this.get(key);
+    return value != null ? value : defaultValue;
+  }
+
+  @Override
+  public @Nullable V computeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
+    requireNonNull(mappingFunction, "mappingFunction");
+    final long now = this.now();
+    final Node<V> node = this.delegate.get(key);
+    final V value;
+    if(node != null && (value = this.read(key, node, now)) != null) return value;
+    // An expired node was removed by the read, so the key is computed as an
+    // absent key, which the delegate loads once if it is single-flight.
+    final Node<V> computed = this.delegate.computeIfAbsent(key, k -> {
+      final V newValue = mappingFunction.apply(k);
+      return newValue != null ? new Node<>(newValue, now) : null;
+    });
+    this.evict();
+    return computed != null ? computed.value : null;
+  }
+
+  @Override
+  public @Nullable V computeIfPresent(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(remappingFunction, "remappingFunction");
+    final long now = this.now();
+    final Node<V> computed = this.delegate.computeIfPresent(key, (k, existing) -> {
+      if(this.expired(existing, now)) return null;
+      final V newValue = remappingFunction.apply(k, existing.value);
+      return newValue != null ? new Node<>(newValue, now) : null;
+    });
+    return computed != null ? computed.value : null;
+  }
+
+  @Override
+  public @Nullable V compute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(remappingFunction, "remappingFunction");
+    final long now = this.now();
+    final Node<V> computed = this.delegate.compute(key, (k, existing) -> {
+      final V newValue = remappingFunction.apply(k, existing != null && !this.expired(existing, now) ? existing.value : null);
+      return newValue != null ? new Node<>(newValue, now) : null;
+    });
+    this.evict();
+    return computed != null ? computed.value : null;
+  }
+
+  @Override
+  public @Nullable V putIfAbsent(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final long now = this.now();
+    final Node<V> node = new Node<>(value, now);
+    for(; ; ) {
+      final Node<V> previous = this.delegate.putIfAbsent(key, node);
+      if(previous == null) {
+        this.evict();
+        return null;
+      }
+      if(!this.expired(previous, now)) {
+        this.touch(previous, now);
+        return previous.value;
+      }
+      // The expired node is only replaced if it was not changed in the
+      // meantime, otherwise the new node is inserted again.
+      if(this.delegate.replace(key, previous, node)) return null;
+    }
+  }
+
+  @Override
+  public @Nullable V put(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final long now = this.now();
+    final Node<V> previous = this.delegate.put(key, new Node<>(value, now));
+    if(previous == null) this.evict();
+    return previous != null && !this.expired(previous, now) ? previous.value : null;
+  }
+
+  @Override
+  public @Nullable V remove(final @Nullable Object key) {
+    final Node<V> previous = this.delegate.remove(key);
+    return previous != null && !this.expired(previous, this.now()) ? previous.value : null;
+  }
+
+  @Override
+  public boolean remove(final @Nullable Object key, final @NonNull Object value) {
+    requireNonNull(value, "value");
+    final long now = this.now();
+    for(; ; ) {
+      final Node<V> node = this.delegate.get(key);
+      if(node == null || this.expired(node, now) || !Objects.equals(node.value, value)) return false;
+      if(this.delegate.remove(key, node)) return true;
+    }
+  }
+
+  @Override
+  public @Nullable V replace(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final long now = this.now();
+    final Node<V> newNode = new Node<>(value, now);
+    for(; ; ) {
+      final Node<V> node = this.delegate.get(key);
+      if(node == null || this.expired(node, now)) return null;
+      if(this.delegate.replace(key, node, newNode)) return node.value;
+    }
+  }
+
+  @Override
+  public boolean replace(final @Nullable K key, final @NonNull V oldValue, final @NonNull V newValue) {
+    requireNonNull(oldValue, "oldValue");
+    requireNonNull(newValue, "newValue");
+    final long now = this.now();
+    final Node<V> newNode = new Node<>(newValue, now);
+    for(; ; ) {
+      final Node<V> node = this.delegate.get(key);
+      if(node == null || this.expired(node, now) || !Objects.equals(node.value, oldValue)) return false;
+      if(this.delegate.replace(key, node, newNode)) return true;
+    }
+  }
+
+  // Bulk Operations
+
+  @Override
+  public void forEach(final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    final long now = this.now();
+    this.delegate.forEach((key, node) -> {
+      if(!this.expired(node, now)) action.accept(key, node.value);
+    });
+  }
+
+  @Override
+  public void forEach(final long parallelismThreshold, final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    final long now = this.now();
+    this.delegate.forEach(parallelismThreshold, (key, node) -> {
+      if(!this.expired(node, now)) action.accept(key, node.value);
+    });
+  }
+
+  @Override
+  public <U> @Nullable U search(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    requireNonNull(searchFunction, "searchFunction");
+    final long now = this.now();
+    return this.delegate.search(parallelismThreshold, (key, node) -> !this.expired(node, now) ? searchFunction.apply(key, node.value) : null);
+  }
+
+  @Override
+  public <U> @Nullable U reduce(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> transformer, final @NonNull BiFunction<? super U, ? super U, ? extends U> reducer) {
+    requireNonNull(transformer, "transformer");
+    requireNonNull(reducer, "reducer");
+    final long now = this.now();
+    return this.delegate.reduce(parallelismThreshold, (key, node) -> !this.expired(node, now) ? transformer.apply(key, node.value) : null, reducer);
+  }
+
+  @Override
+  public long reduceValuesToLong(final long parallelismThreshold, final @NonNull ToLongFunction<? super V> transformer, final long basis, final @NonNull LongBinaryOperator reducer) {
+    requireNonNull(transformer, "transformer");
+    requireNonNull(reducer, "reducer");
+    final long now = this.now();
+    // The basis is the identity of the reducer, so it stands in for the
+    // expired values.
+    return this.delegate.reduceValuesToLong(parallelismThreshold, node -> !this.expired(node, now) ? transformer.applyAsLong(node.value) : basis, basis, reducer);
+  }
+
+  @Override
+  public void replaceAll(final @NonNull BiFunction<? super K, ? super V, ? extends V> function) {
+    requireNonNull(function, "function");
+    final long now = this.now();
+    this.delegate.replaceAll((key, node) -> {
+      if(this.expired(node, now)) return node;
+      return new Node<>(requireNonNull(function.apply(key, node.value), "value"), now);
+    });
+  }
+
+  @Override
+  public void clear() {
+    this.delegate.clear();
+    this.evictionLock.lock();
+    try {
+      // The iterator is over the entries from before the clear.
+      this.hand = null;
+    } finally {
+      this.evictionLock.unlock();
+    }
+  }
+
+  // Stats
+
+  @Override
+  public @NonNull Stats stats() {
+    return this.delegate.stats();
+  }
+
+  // Views
+
+  @Override
+  public @NonNull Set<Entry<K, V>> entrySet() {
+    if(this.entrySet != null) return this.entrySet;
+    return this.entrySet = new EntrySetView();
+  }
+
+  @Override
+  public @NonNull Set<K> keySet() {
+    if(this.keySet != null) return this.keySet;
+    return this.keySet = new KeySetView();
+  }
+
+  @Override
+  public @NonNull Collection<V> values() {
+    if(this.values != null) return this.values;
+    return this.values = new ValuesView();
+  }
+
+  /**
+   * Returns the value of the node, updating its access time, or removes
+   * the node and returns {@code null} if it has expired.
+   */
+  private @Nullable V read(final @Nullable Object key, final @NonNull Node<V> node, final long now) {
+    if(this.expired(node, now)) {
+      this.delegate.remove(key, node);
+      return null;
+    }
+    this.touch(node, now);
+    return node.value;
+  }
+
+  private long now() {
+    return this.expiring ? this.ticker.getAsLong() : this.clock.get();
+  }
+
+  private void touch(final @NonNull Node<V> node, final long now) {
+    // Only a plain volatile write, without a lock, and skipped if the
+    // access time was updated recently.
+    if(this.expireAfterAccess >= 0 || this.maximumSize >= 0) {
+      if(now - node.accessed >= this.accessGranularity) node.accessed = now;
+    }
+  }
+
+  private boolean expired(final @NonNull Node<V> node, final long now) {
+    return (this.expireAfterWrite >= 0 && now - node.written >= this.expireAfterWrite)
+      || (this.expireAfterAccess >= 0 && now - node.accessed >= this.expireAfterAccess);
+  }
+
+  private void evict() {
+    if(!this.expiring) this.clock.incrementAndGet();
+    if(this.maximumSize < 0 || this.delegate.size() <= this.maximumSize) return;
+    if(!this.evictionLock.tryLock()) return;
+    try {
+      final long now = this.now();
+      while(this.delegate.size() > this.maximumSize) {
+        K victimKey = null;
+        Node<V> victim = null;
+        boolean removed = false;
+        boolean restarted = false;
+        for(int i = 0; i < CacheSyncMapImpl.SAMPLE_SIZE; i++) {
+          if(this.hand == null || !this.hand.hasNext()) {
+            if(restarted) break;
+            // Restarting the iterator promotes the delegate, so the keys
+            // added since the last restart are sampled as well.
+            this.hand = this.delegate.entrySet().iterator();
+            restarted = true;
+            if(!this.hand.hasNext()) break;
+          }
+          final Map.Entry<K, Node<V>> entry = this.hand.next();
+          final Node<V> node = entry.getValue();
+          if(this.expired(node, now)) {
+            removed |= this.delegate.remove(entry.getKey(), node);
+          } else if(victim == null || node.accessed - victim.accessed < 0) {
+            victimKey = entry.getKey();
+            victim = node;
+          }
+        }
+        if(victim != null && this.delegate.size() > this.maximumSize) {
+          removed |= this.delegate.remove(victimKey, victim);
+        }
+        // A whole pass over a fresh iterator could not remove anything, as
+        // the sampled entries were all changed concurrently.
+        if(!removed && restarted) break;
+      }
+    } finally {
+      this.evictionLock.unlock();
+    }
+  }
+
+  /* package */ static final class Node<V> {
+    /* package */ final V value;
+    /* package */ final long written;
+    /* package */ volatile long accessed;
+
+    /* package */ Node(final @NonNull V value, final long written) {
+      this.value = value;
+      this.written = written;
+      this.accessed = written;
+    }
+  }
+
+  /* package */ final class MapEntry implements Map.Entry<K, V> {
+    private final K key;
+    private V value;
+
+    /* package */ MapEntry(final @Nullable K key, final @NonNull V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public @Nullable K getKey() {
+      return this.key;
+    }
+
+    @Override
+    public @NonNull V getValue() {
+      return this.value;
+    }
+
+    @Override
+    public @Nullable V setValue(final @NonNull V value) {
+      requireNonNull(value, "value");
+      final V previous = CacheSyncMapImpl.this.put(this.key, value);
+      this.value = value;
+      return previous;
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return "CacheSyncMapImpl.MapEntry{key=" + this.getKey() + ", value=" + this.getValue() + "}";
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if(this == other) return true;
+      if(!(other instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> that = (Map.Entry<?, ?>) other;
+      return Objects.equals(this.getKey(), that.getKey())
+        && Objects.equals(this.getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.getKey(), this.getValue());
+    }
+  }
+
+  /* package */ final class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return CacheSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Entry<?, ?>) entry;
+      final V value = CacheSyncMapImpl.this.get(mapEntry.getKey());
+      return value != null && Objects.equals(value, mapEntry.getValue());
+    }
+
+    @Override
+    public boolean add(final @NonNull Entry<K, V> entry) {
+      requireNonNull(entry, "entry");
+      return CacheSyncMapImpl.this.put(entry.getKey(), entry.getValue()) == null;
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Entry<?, ?>) entry;
+      return CacheSyncMapImpl.this.remove(mapEntry.getKey(), mapEntry.getValue());
+    }
+
+    @Override
+    public void clear() {
+      CacheSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<Map.Entry<K, V>> spliterator() {
+      // The size includes the expired entries that are skipped, so it
+      // is not reported.
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.NONNULL | Spliterator.DISTINCT | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return CacheSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object key) {
+      return CacheSyncMapImpl.this.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key) {
+      return CacheSyncMapImpl.this.remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      CacheSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<K> spliterator() {
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.DISTINCT | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return CacheSyncMapImpl.this.size();
+    }
+
+    @Override
+    public void clear() {
+      CacheSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<V> spliterator() {
+      return Spliterators.spliteratorUnknownSize(this.iterator(), Spliterator.NONNULL | Spliterator.CONCURRENT);
+    }
+  }
+
+  /* package */ final class EntryIterator extends ViewIterator<Map.Entry<K, V>> {
+    @Override
+    /* package */ Map.@NonNull Entry<K, V> element(final @Nullable K key, final @NonNull V value) {
+      return new MapEntry(key, value);
+    }
+  }
+
+  /* package */ final class KeyIterator extends ViewIterator<K> {
+    @Override
+    /* package */ @Nullable K element(final @Nullable K key, final @NonNull V value) {
+      return key;
+    }
+  }
+
+  /* package */ final class ValueIterator extends ViewIterator<V> {
+    @Override
+    /* package */ @NonNull V element(final @Nullable K key, final @NonNull V value) {
+      return value;
+    }
+  }
+
+  /* package */ abstract class ViewIterator<T> implements Iterator<T> {
+    private final Iterator<Map.Entry<K, Node<V>>> backingIterator = CacheSyncMapImpl.this.delegate.entrySet().iterator();
+    private final long now = CacheSyncMapImpl.this.now();
+    private K nextKey;
+    private Node<V> nextNode;
+    private K currentKey;
+    private boolean current;
+
+    /* package */ ViewIterator() {
+      this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.nextNode != null;
+    }
+
+    @Override
+    public T next() {
+      final K key = this.nextKey;
+      final Node<V> node;
+      if((node = this.nextNode) == null) throw new NoSuchElementException();
+      this.currentKey = key;
+      this.current = true;
+      this.advance();
+      return this.element(key, node.value);
+    }
+
+    @Override
+    public void remove() {
+      if(!this.current) throw new IllegalStateException();
+      this.current = false;
+      CacheSyncMapImpl.this.remove(this.currentKey);
+    }
+
+    /* package */ abstract T element(final @Nullable K key, final @NonNull V value);
+
+    private void advance() {
+      this.nextKey = null;
+      this.nextNode = null;
+      while(this.backingIterator.hasNext()) {
+        final Map.Entry<K, Node<V>> entry = this.backingIterator.next();
+        final Node<V> node = entry.getValue();
+        if(!CacheSyncMapImpl.this.expired(node, this.now)) {
+          this.nextKey = entry.getKey();
+          this.nextNode = node;
+          return;
+        }
+      }
+    }
+  }
+}
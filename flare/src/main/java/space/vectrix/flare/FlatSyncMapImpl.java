@@ -0,0 +1,929 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/* package */ final class FlatSyncMapImpl<K, V> extends AbstractMap<K, V> implements SyncMap<K, V> {
+  /**
+   * The smallest table the map is created with.
+   */
+  private static final int MINIMUM_CAPACITY = 16;
+
+  /**
+   * The largest table the map can grow to.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  /**
+   * Returned by a probe that ran into a slot of a table that was replaced.
+   */
+  private static final int RETIRED = Integer.MIN_VALUE;
+
+  /**
+   * Marks a slot whose key was removed. The slot keeps its key, so only
+   * that key can set a value in it again.
+   */
+  private static final Object REMOVED = new Object();
+
+  /**
+   * Marks a slot that held a key, in a table that was replaced by a resize
+   * or a clear.
+   */
+  private static final Object EXPUNGED = new Object();
+
+  /**
+   * Marks a slot that was empty, in a table that was replaced by a resize
+   * or a clear.
+   */
+  private static final Object CLOSED = new Object();
+
+  /**
+   * A single lock when inserting new keys, resizing or clearing the table,
+   * which a waiting virtual thread parks on instead of pinning its carrier
+   * thread.
+   */
+  private transient final ReentrantLock lock = new ReentrantLock();
+
+  /**
+   * The table of keys and values.
+   */
+  private transient volatile Table table;
+
+  /**
+   * The amount of values in the table.
+   */
+  private transient final LongAdder count = new LongAdder();
+
+  /**
+   * The capacity the table is created with, and reset to when cleared.
+   */
+  private transient final int initialCapacity;
+
+  private transient EntrySetView entrySet;
+
+  private transient KeySetView keySet;
+
+  private transient ValuesView values;
+
+  /* package */ FlatSyncMapImpl(final int initialCapacity) {
+    if(initialCapacity < 0) throw new IllegalArgumentException("Initial capacity must be nonnegative");
+    this.initialCapacity = FlatSyncMapImpl.tableSize(initialCapacity);
+    this.table = new Table(this.initialCapacity);
+  }
+
+  // Query Operations
+
+  @Override
+  public int size() {
+    final long count = this.count.sum();
+    return count < 0 ? 0 : (int) Math.min(count, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return this.count.sum() <= 0;
+  }
+
+  @Override
+  public boolean containsKey(final @Nullable Object key) {
+    return this.get(key) != null;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V get(final @Nullable Object key) {
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final Object value = table.values.get(slot);
+        if(value != FlatSyncMapImpl.EXPUNGED) return value != FlatSyncMapImpl.REMOVED ? (V) value : null;
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return null;
+      }
+      table = this.resync();
+    }
+  }
+
+  @Override
+  public @NonNull V getOrDefault(final @Nullable Object key, final @NonNull V defaultValue) {
+    requireNonNull(defaultValue, "defaultValue");
+    final V value = this.get(key);
+    return value != null ? value : defaultValue;
+  }
+
+  // Modification Operations
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V computeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
+    requireNonNull(mappingFunction, "mappingFunction");
+    final int hash = FlatSyncMapImpl.hash(key);
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) {
+      final Object value = table.values.get(slot);
+      if(value != FlatSyncMapImpl.REMOVED && value != FlatSyncMapImpl.EXPUNGED) return (V) value;
+    }
+    this.lock.lock();
+    try {
+      // The function is applied while the lock is held, so it is applied at
+      // most once for an absent key.
+      final Table current = this.table;
+      final int found = FlatSyncMapImpl.slot(current, key, hash);
+      if(found >= 0) {
+        final Object previous = current.values.get(found);
+        if(previous != FlatSyncMapImpl.REMOVED) return (V) previous;
+      }
+      final V next = mappingFunction.apply(key);
+      if(next == null) return null;
+      final Object present = this.putIfAbsentLocked(key, hash, next);
+      return present != null ? (V) present : next;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V computeIfPresent(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(remappingFunction, "remappingFunction");
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final AtomicReferenceArray<Object> values = table.values;
+        for(; ; ) {
+          final Object previous = values.get(slot);
+          if(previous == FlatSyncMapImpl.EXPUNGED) break;
+          if(previous == FlatSyncMapImpl.REMOVED) return null;
+          final V next = remappingFunction.apply(key, (V) previous);
+          if(values.compareAndSet(slot, previous, next != null ? next : FlatSyncMapImpl.REMOVED)) {
+            if(next == null) this.count.decrement();
+            return next;
+          }
+        }
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return null;
+      }
+      table = this.resync();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V compute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(remappingFunction, "remappingFunction");
+    final int hash = FlatSyncMapImpl.hash(key);
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) {
+      final Object next = this.compute(table, slot, key, remappingFunction);
+      if(next != FlatSyncMapImpl.EXPUNGED) return (V) next;
+    }
+    this.lock.lock();
+    try {
+      for(; ; ) {
+        final Table current = this.table;
+        final int found = FlatSyncMapImpl.slot(current, key, hash);
+        if(found < 0) {
+          final V next = remappingFunction.apply(key, null);
+          if(next != null) this.putLocked(key, hash, next);
+          return next;
+        }
+        // The slot is moved if the function resizes the table, in which
+        // case the function is applied again to the current table.
+        final Object next = this.compute(current, found, key, remappingFunction);
+        if(next != FlatSyncMapImpl.EXPUNGED) return (V) next;
+      }
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V putIfAbsent(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final int hash = FlatSyncMapImpl.hash(key);
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) {
+      final Object previous = this.putIfRemoved(table, slot, value);
+      if(previous != FlatSyncMapImpl.EXPUNGED) return (V) previous;
+    }
+    this.lock.lock();
+    try {
+      return (V) this.putIfAbsentLocked(key, hash, value);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V put(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final int hash = FlatSyncMapImpl.hash(key);
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) {
+      final Object previous = this.exchange(table, slot, value);
+      if(previous != FlatSyncMapImpl.EXPUNGED) return (V) previous;
+    }
+    this.lock.lock();
+    try {
+      return (V) this.putLocked(key, hash, value);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V remove(final @Nullable Object key) {
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final Object previous = this.exchange(table, slot, FlatSyncMapImpl.REMOVED);
+        if(previous != FlatSyncMapImpl.EXPUNGED) return (V) previous;
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return null;
+      }
+      table = this.resync();
+    }
+  }
+
+  @Override
+  public boolean remove(final @Nullable Object key, final @NonNull Object value) {
+    requireNonNull(value, "value");
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final AtomicReferenceArray<Object> values = table.values;
+        for(; ; ) {
+          final Object previous = values.get(slot);
+          if(previous == FlatSyncMapImpl.EXPUNGED) break;
+          if(previous == FlatSyncMapImpl.REMOVED || !previous.equals(value)) return false;
+          if(values.compareAndSet(slot, previous, FlatSyncMapImpl.REMOVED)) {
+            this.count.decrement();
+            return true;
+          }
+        }
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return false;
+      }
+      table = this.resync();
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public @Nullable V replace(final @Nullable K key, final @NonNull V value) {
+    requireNonNull(value, "value");
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final AtomicReferenceArray<Object> values = table.values;
+        for(; ; ) {
+          final Object previous = values.get(slot);
+          if(previous == FlatSyncMapImpl.EXPUNGED) break;
+          if(previous == FlatSyncMapImpl.REMOVED) return null;
+          if(values.compareAndSet(slot, previous, value)) return (V) previous;
+        }
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return null;
+      }
+      table = this.resync();
+    }
+  }
+
+  @Override
+  public boolean replace(final @Nullable K key, final @NonNull V oldValue, final @NonNull V newValue) {
+    requireNonNull(oldValue, "oldValue");
+    requireNonNull(newValue, "newValue");
+    final int hash = FlatSyncMapImpl.hash(key);
+    Table table = this.table;
+    for(; ; ) {
+      final int slot = FlatSyncMapImpl.slot(table, key, hash);
+      if(slot >= 0) {
+        final AtomicReferenceArray<Object> values = table.values;
+        for(; ; ) {
+          final Object previous = values.get(slot);
+          if(previous == FlatSyncMapImpl.EXPUNGED) break;
+          if(previous == FlatSyncMapImpl.REMOVED || !previous.equals(oldValue)) return false;
+          if(values.compareAndSet(slot, previous, newValue)) return true;
+        }
+      } else if(slot != FlatSyncMapImpl.RETIRED) {
+        return false;
+      }
+      table = this.resync();
+    }
+  }
+
+  // Bulk Operations
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    final Table table = this.table;
+    V value;
+    for(int i = 0; i < table.keys.length; i++) {
+      if((value = this.load(table, i)) != null) {
+        action.accept((K) table.keys[i], value);
+      }
+    }
+  }
+
+  @Override
+  public void clear() {
+    this.lock.lock();
+    try {
+      final AtomicReferenceArray<Object> values = this.table.values;
+      for(int i = 0; i < values.length(); i++) {
+        final Object value = FlatSyncMapImpl.retire(values, i);
+        if(value != null && value != FlatSyncMapImpl.REMOVED) this.count.decrement();
+      }
+      this.table = new Table(this.initialCapacity);
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  // Views
+
+  @Override
+  public @NonNull Set<Entry<K, V>> entrySet() {
+    if(this.entrySet != null) return this.entrySet;
+    return this.entrySet = new EntrySetView();
+  }
+
+  @Override
+  public @NonNull Set<K> keySet() {
+    if(this.keySet != null) return this.keySet;
+    return this.keySet = new KeySetView();
+  }
+
+  @Override
+  public @NonNull Collection<V> values() {
+    if(this.values != null) return this.values;
+    return this.values = new ValuesView();
+  }
+
+  /**
+   * Returns the current table, once any resize or clear in progress has
+   * published it, as a probe of a replaced table would otherwise keep
+   * running into it.
+   */
+  private @NonNull Table resync() {
+    this.lock.lock();
+    try {
+      return this.table;
+    } finally {
+      this.lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the value in the slot of the table, looking it up in the
+   * current table if the slot was moved, or {@code null} if there is none.
+   */
+  @SuppressWarnings("unchecked")
+  private @Nullable V load(final @NonNull Table table, final int slot) {
+    final Object value = table.values.get(slot);
+    if(value == null || value == FlatSyncMapImpl.REMOVED || value == FlatSyncMapImpl.CLOSED) return null;
+    return value != FlatSyncMapImpl.EXPUNGED ? (V) value : this.get(table.keys[slot]);
+  }
+
+  /**
+   * Sets the value in the slot, returning the previous one, or
+   * {@link #EXPUNGED} if the slot was moved by a resize.
+   */
+  private @Nullable Object exchange(final @NonNull Table table, final int slot, final @NonNull Object value) {
+    final AtomicReferenceArray<Object> values = table.values;
+    for(; ; ) {
+      final Object previous = values.get(slot);
+      if(previous == FlatSyncMapImpl.EXPUNGED) return previous;
+      if(previous == value || values.compareAndSet(slot, previous, value)) {
+        if(previous == FlatSyncMapImpl.REMOVED) {
+          if(value != FlatSyncMapImpl.REMOVED) this.count.increment();
+          return null;
+        }
+        if(value == FlatSyncMapImpl.REMOVED) this.count.decrement();
+        return previous;
+      }
+    }
+  }
+
+  /**
+   * Sets the value in the slot if its key was removed, returning the
+   * present value otherwise, or {@link #EXPUNGED} if the slot was moved by a
+   * resize.
+   */
+  private @Nullable Object putIfRemoved(final @NonNull Table table, final int slot, final @NonNull V value) {
+    final AtomicReferenceArray<Object> values = table.values;
+    for(; ; ) {
+      final Object previous = values.get(slot);
+      if(previous != FlatSyncMapImpl.REMOVED) return previous;
+      if(values.compareAndSet(slot, previous, value)) {
+        this.count.increment();
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Sets the value in the slot to the result of the remapping function,
+   * returning it, or {@link #EXPUNGED} if the slot was moved by a resize.
+   */
+  @SuppressWarnings("unchecked")
+  private @Nullable Object compute(final @NonNull Table table, final int slot, final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    final AtomicReferenceArray<Object> values = table.values;
+    for(; ; ) {
+      final Object previous = values.get(slot);
+      if(previous == FlatSyncMapImpl.EXPUNGED) return previous;
+      final V value = previous != FlatSyncMapImpl.REMOVED ? (V) previous : null;
+      final V next = remappingFunction.apply(key, value);
+      if(value == null && next == null) return null;
+      if(values.compareAndSet(slot, previous, next != null ? next : FlatSyncMapImpl.REMOVED)) {
+        if(value == null) {
+          this.count.increment();
+        } else if(next == null) {
+          this.count.decrement();
+        }
+        return next;
+      }
+    }
+  }
+
+  /**
+   * Sets the value of the key in the current table while holding the lock,
+   * returning the previous one.
+   *
+   * <p>The key is probed again, as a function applied while holding the
+   * lock may have inserted keys into the table, or replaced it.</p>
+   */
+  private @Nullable Object putLocked(final @Nullable K key, final int hash, final @NonNull V value) {
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) return this.exchange(table, slot, value);
+    this.insertLocked(table, ~slot, key, hash, value);
+    return null;
+  }
+
+  /**
+   * Sets the value of the key in the current table while holding the lock,
+   * if the key is absent, returning the present value otherwise.
+   */
+  private @Nullable Object putIfAbsentLocked(final @Nullable K key, final int hash, final @NonNull V value) {
+    final Table table = this.table;
+    final int slot = FlatSyncMapImpl.slot(table, key, hash);
+    if(slot >= 0) return this.putIfRemoved(table, slot, value);
+    this.insertLocked(table, ~slot, key, hash, value);
+    return null;
+  }
+
+  /**
+   * Inserts the key and value into the free slot of the table, resizing the
+   * table first if it is full.
+   */
+  private void insertLocked(final @NonNull Table table, final int free, final @Nullable K key, final int hash, final @NonNull V value) {
+    Table target = table;
+    int slot = free;
+    if(table.used >= table.threshold) {
+      target = this.resizeLocked(table);
+      slot = ~FlatSyncMapImpl.slot(target, key, hash);
+    }
+    target.keys[slot] = key;
+    target.values.set(slot, value);
+    target.used++;
+    this.count.increment();
+  }
+
+  /**
+   * Moves the values into a new table, doubling its capacity unless most of
+   * the used slots only hold removed keys, which are dropped.
+   */
+  private @NonNull Table resizeLocked(final @NonNull Table table) {
+    final Object[] keys = table.keys;
+    final AtomicReferenceArray<Object> values = table.values;
+    final boolean grow = this.count.sum() * 2 > table.threshold;
+    if(grow && keys.length == FlatSyncMapImpl.MAXIMUM_CAPACITY) throw new IllegalStateException("Map has reached its maximum capacity");
+    final int capacity = grow ? keys.length << 1 : keys.length;
+    final Table next = new Table(capacity);
+    for(int i = 0; i < keys.length; i++) {
+      final Object value = FlatSyncMapImpl.retire(values, i);
+      if(value != null && value != FlatSyncMapImpl.REMOVED) {
+        final int slot = ~FlatSyncMapImpl.slot(next, keys[i], FlatSyncMapImpl.hash(keys[i]));
+        next.keys[slot] = keys[i];
+        next.values.lazySet(slot, value);
+        next.used++;
+      }
+    }
+    return this.table = next;
+  }
+
+  /**
+   * Marks the slot of a table that is being replaced, returning its value.
+   *
+   * <p>Writers compare-and-set their slot, so marking it makes any later
+   * write retry against the new table, rather than being lost.</p>
+   */
+  private static @Nullable Object retire(final @NonNull AtomicReferenceArray<Object> values, final int slot) {
+    for(; ; ) {
+      final Object value = values.get(slot);
+      if(values.compareAndSet(slot, value, value != null ? FlatSyncMapImpl.EXPUNGED : FlatSyncMapImpl.CLOSED)) return value;
+    }
+  }
+
+  /**
+   * Returns the slot holding the key, {@link #RETIRED} if the probe ran into
+   * a slot of a replaced table, or else the complement of the free slot the
+   * key would be inserted into.
+   */
+  private static int slot(final @NonNull Table table, final @Nullable Object key, final int hash) {
+    final AtomicReferenceArray<Object> values = table.values;
+    final int mask = table.keys.length - 1;
+    for(int i = hash & mask; ; i = (i + 1) & mask) {
+      final Object value = values.get(i);
+      if(value == null) return ~i;
+      if(value == FlatSyncMapImpl.EXPUNGED || value == FlatSyncMapImpl.CLOSED) return FlatSyncMapImpl.RETIRED;
+      // The key is written before the value is published, so it is visible
+      // once the value is.
+      if(Objects.equals(table.keys[i], key)) return i;
+    }
+  }
+
+  private static int hash(final @Nullable Object key) {
+    // Spreads the hash, as the table is indexed by its lower bits.
+    final int hash = Objects.hashCode(key) * 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  private static int tableSize(final int expected) {
+    final long capacity = Math.max(FlatSyncMapImpl.MINIMUM_CAPACITY, expected * 4L / 3 + 1);
+    return (int) Math.min(FlatSyncMapImpl.MAXIMUM_CAPACITY, Long.highestOneBit(capacity - 1) << 1);
+  }
+
+  /**
+   * The keys and values of the map, stored in parallel arrays, where the
+   * value in each slot is either {@code null} if the slot is free, one of
+   * the sentinels, or the value of the key in the slot.
+   */
+  /* package */ static final class Table {
+    /* package */ final Object[] keys;
+    /* package */ final AtomicReferenceArray<Object> values;
+    /* package */ final int threshold;
+    /* package */ int used;
+
+    /* package */ Table(final int capacity) {
+      this.keys = new Object[capacity];
+      this.values = new AtomicReferenceArray<>(capacity);
+      this.threshold = capacity - (capacity >>> 2);
+    }
+  }
+
+  /* package */ final class MapEntry implements Map.Entry<K, V> {
+    private final K key;
+    private V value;
+
+    /* package */ MapEntry(final @Nullable K key, final @NonNull V value) {
+      this.key = key;
+      this.value = value;
+    }
+
+    @Override
+    public @Nullable K getKey() {
+      return this.key;
+    }
+
+    @Override
+    public @NonNull V getValue() {
+      return this.value;
+    }
+
+    @Override
+    public @Nullable V setValue(final @NonNull V value) {
+      requireNonNull(value, "value");
+      final V previous = FlatSyncMapImpl.this.put(this.key, value);
+      this.value = value;
+      return previous;
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return "FlatSyncMapImpl.MapEntry{key=" + this.getKey() + ", value=" + this.getValue() + "}";
+    }
+
+    @Override
+    public boolean equals(final @Nullable Object other) {
+      if(this == other) return true;
+      if(!(other instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> that = (Map.Entry<?, ?>) other;
+      return Objects.equals(this.getKey(), that.getKey())
+        && Objects.equals(this.getValue(), that.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(this.getKey(), this.getValue());
+    }
+  }
+
+  /* package */ final class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return FlatSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Entry<?, ?>) entry;
+      final V value = FlatSyncMapImpl.this.get(mapEntry.getKey());
+      return value != null && Objects.equals(value, mapEntry.getValue());
+    }
+
+    @Override
+    public boolean add(final @NonNull Entry<K, V> entry) {
+      requireNonNull(entry, "entry");
+      return FlatSyncMapImpl.this.put(entry.getKey(), entry.getValue()) == null;
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Entry<?, ?>) entry;
+      return mapEntry.getValue() != null && FlatSyncMapImpl.this.remove(mapEntry.getKey(), mapEntry.getValue());
+    }
+
+    @Override
+    public void clear() {
+      FlatSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<Map.Entry<K, V>> iterator() {
+      return new EntryIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<Map.Entry<K, V>> spliterator() {
+      return new ViewSpliterator<>(FlatSyncMapImpl.this.table, (key, value) -> new MapEntry(key, value), Spliterator.NONNULL | Spliterator.DISTINCT);
+    }
+  }
+
+  /* package */ final class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return FlatSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object key) {
+      return FlatSyncMapImpl.this.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key) {
+      return FlatSyncMapImpl.this.remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      FlatSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<K> iterator() {
+      return new KeyIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<K> spliterator() {
+      return new ViewSpliterator<>(FlatSyncMapImpl.this.table, (key, value) -> key, Spliterator.DISTINCT);
+    }
+  }
+
+  /* package */ final class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return FlatSyncMapImpl.this.size();
+    }
+
+    @Override
+    public void clear() {
+      FlatSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<V> iterator() {
+      return new ValueIterator();
+    }
+
+    @Override
+    public @NonNull Spliterator<V> spliterator() {
+      return new ViewSpliterator<>(FlatSyncMapImpl.this.table, (key, value) -> value, Spliterator.NONNULL);
+    }
+  }
+
+  /**
+   * Iterates over the slots of the table at the time the iterator was
+   * created, keeping the key and value of the next one that has a value.
+   */
+  /* package */ abstract class ViewIterator<T> implements Iterator<T> {
+    private final Table table = FlatSyncMapImpl.this.table;
+    private int slot = -1;
+    private K nextKey;
+    private V nextValue;
+    private K currentKey;
+    private boolean current;
+
+    /* package */ ViewIterator() {
+      this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.nextValue != null;
+    }
+
+    @Override
+    public T next() {
+      final K key = this.nextKey;
+      final V value;
+      if((value = this.nextValue) == null) throw new NoSuchElementException();
+      this.currentKey = key;
+      this.current = true;
+      this.advance();
+      return this.element(key, value);
+    }
+
+    @Override
+    public void remove() {
+      if(!this.current) throw new IllegalStateException();
+      this.current = false;
+      FlatSyncMapImpl.this.remove(this.currentKey);
+    }
+
+    /* package */ abstract T element(final @Nullable K key, final @NonNull V value);
+
+    @SuppressWarnings("unchecked")
+    private void advance() {
+      this.nextKey = null;
+      this.nextValue = null;
+      while(++this.slot < this.table.keys.length) {
+        final V value;
+        if((value = FlatSyncMapImpl.this.load(this.table, this.slot)) != null) {
+          this.nextKey = (K) this.table.keys[this.slot];
+          this.nextValue = value;
+          return;
+        }
+      }
+    }
+  }
+
+  /* package */ final class EntryIterator extends ViewIterator<Map.Entry<K, V>> {
+    @Override
+    /* package */ Map.@NonNull Entry<K, V> element(final @Nullable K key, final @NonNull V value) {
+      return new MapEntry(key, value);
+    }
+  }
+
+  /* package */ final class KeyIterator extends ViewIterator<K> {
+    @Override
+    /* package */ @Nullable K element(final @Nullable K key, final @NonNull V value) {
+      return key;
+    }
+  }
+
+  /* package */ final class ValueIterator extends ViewIterator<V> {
+    @Override
+    /* package */ @NonNull V element(final @Nullable K key, final @NonNull V value) {
+      return value;
+    }
+  }
+
+  /**
+   * Splits over a range of slots of the table at the time the spliterator
+   * was created, halving the range on each split.
+   */
+  /* package */ final class ViewSpliterator<T> implements Spliterator<T> {
+    private final Table table;
+    private final BiFunction<K, V, T> function;
+    private final int characteristics;
+    private int slot;
+    private final int fence;
+
+    /* package */ ViewSpliterator(final @NonNull Table table, final @NonNull BiFunction<K, V, T> function, final int characteristics) {
+      this(table, function, characteristics | Spliterator.CONCURRENT, 0, table.keys.length);
+    }
+
+    private ViewSpliterator(final @NonNull Table table, final @NonNull BiFunction<K, V, T> function, final int characteristics, final int slot, final int fence) {
+      this.table = table;
+      this.function = function;
+      this.characteristics = characteristics;
+      this.slot = slot;
+      this.fence = fence;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      while(this.slot < this.fence) {
+        final int slot = this.slot++;
+        final V value;
+        if((value = FlatSyncMapImpl.this.load(this.table, slot)) != null) {
+          action.accept(this.function.apply((K) this.table.keys[slot], value));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      V value;
+      for(; this.slot < this.fence; this.slot++) {
+        if((value = FlatSyncMapImpl.this.load(this.table, this.slot)) != null) {
+          action.accept(this.function.apply((K) this.table.keys[this.slot], value));
+        }
+      }
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+      final int slot = this.slot;
+      final int middle = (slot + this.fence) >>> 1;
+      if(middle <= slot) return null;
+      this.slot = middle;
+      return new ViewSpliterator<>(this.table, this.function, this.characteristics, slot, middle);
+    }
+
+    @Override
+    public long estimateSize() {
+      return this.fence - this.slot;
+    }
+
+    @Override
+    public int characteristics() {
+      return this.characteristics;
+    }
+  }
+}
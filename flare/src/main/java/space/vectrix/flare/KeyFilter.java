@@ -0,0 +1,113 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A Bloom filter over the keys added to a {@code dirty} map that were not in
+ * the {@code read} map, which tells the lookups the keys that are definitely
+ * absent from the {@code dirty} map.
+ *
+ * <p>Keys are only added while holding the lock of the map, but may be
+ * tested concurrently without it. Keys are never removed, so a removed key
+ * is only a false positive, which takes the lock as before.</p>
+ */
+/* package */ final class KeyFilter {
+  /**
+   * The bits reserved for each key, which keeps the false positive rate at
+   * around five percent with two bits set for each key.
+   */
+  private static final int BITS_PER_KEY = 8;
+
+  /**
+   * The maximum amount of keys a filter is sized for, past which the false
+   * positive rate is allowed to rise instead.
+   */
+  private static final int MAXIMUM_CAPACITY = 1 << 24;
+
+  private final AtomicLongArray bits;
+
+  private final int mask;
+
+  private final int capacity;
+
+  private int size;
+
+  /* package */ KeyFilter(final int expected) {
+    this.capacity = Math.min(KeyFilter.MAXIMUM_CAPACITY, Math.max(64, Integer.highestOneBit(Math.max(1, expected) - 1) << 1));
+    final int length = this.capacity * KeyFilter.BITS_PER_KEY;
+    this.bits = new AtomicLongArray(length >>> 6);
+    this.mask = length - 1;
+  }
+
+  /**
+   * Returns whether the filter holds as many keys as it was sized for, and
+   * should be replaced by a larger one.
+   *
+   * @return whether the filter is full
+   */
+  /* package */ boolean full() {
+    return this.size >= this.capacity && this.capacity < KeyFilter.MAXIMUM_CAPACITY;
+  }
+
+  /**
+   * Adds the key with the provided hash, while holding the lock.
+   *
+   * @param hash the key hash
+   */
+  /* package */ void add(final int hash) {
+    final int first = hash * 0x9E3779B9;
+    final int second = Integer.rotateLeft(first, 16) * 0x85EBCA6B;
+    this.set(first & this.mask);
+    this.set(second & this.mask);
+    this.size++;
+  }
+
+  /**
+   * Returns whether the key with the provided hash may have been added, or
+   * was definitely not added if {@code false}.
+   *
+   * @param hash the key hash
+   * @return whether the key may have been added
+   */
+  /* package */ boolean mightContain(final int hash) {
+    final int first = hash * 0x9E3779B9;
+    final int second = Integer.rotateLeft(first, 16) * 0x85EBCA6B;
+    return this.get(first & this.mask) && this.get(second & this.mask);
+  }
+
+  private void set(final int bit) {
+    // Only a single thread adds keys at a time, so the word can be set
+    // without a compare and set.
+    final long word = this.bits.get(bit >>> 6);
+    final long mask = 1L << bit;
+    if((word & mask) == 0) this.bits.set(bit >>> 6, word | mask);
+  }
+
+  private boolean get(final int bit) {
+    return (this.bits.get(bit >>> 6) & (1L << bit)) != 0;
+  }
+}
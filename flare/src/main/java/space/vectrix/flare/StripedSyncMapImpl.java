@@ -0,0 +1,513 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Objects.requireNonNull;
+
+/* package */ final class StripedSyncMapImpl<K, V> extends AbstractMap<K, V> implements SyncMap<K, V> {
+  /**
+   * The stripes keys are spread across, each with their own {@code read} and
+   * {@code dirty} map, lock and promotion.
+   */
+  private transient final SyncMapImpl<K, V>[] stripes;
+
+  /**
+   * The amount of bits to shift a mixed hash by to select a stripe.
+   */
+  private transient final int shift;
+
+  private transient EntrySetView entrySet;
+
+  private transient KeySetView keySet;
+
+  private transient ValuesView values;
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  /* package */ StripedSyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder) {
+    final int initialCapacity = builder.initialCapacity;
+    final int bits = 32 - Integer.numberOfLeadingZeros(builder.stripes - 1);
+    final int length = 1 << bits;
+    final int stripeCapacity = (initialCapacity + length - 1) / length;
+    this.stripes = new SyncMapImpl[length];
+    this.shift = 32 - bits;
+    for(int i = 0; i < length; i++) {
+      this.stripes[i] = new SyncMapImpl<>(builder, stripeCapacity);
+    }
+  }
+
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  /* package */ StripedSyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder, final @NonNull Map<? extends K, ? extends V> map) {
+    final int bits = 32 - Integer.numberOfLeadingZeros(builder.stripes - 1);
+    final int length = 1 << bits;
+    this.stripes = new SyncMapImpl[length];
+    this.shift = 32 - bits;
+    // Splits the mappings up by stripe first, so that each stripe can load
+    // its own mappings straight into its read map.
+    final Map<K, V>[] partitions = this.partition(map);
+    for(int i = 0; i < length; i++) {
+      this.stripes[i] = new SyncMapImpl<>(builder, partitions[i] != null ? partitions[i] : Collections.emptyMap());
+    }
+  }
+
+  // Query Operations
+
+  @Override
+  public int size() {
+    long size = 0;
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      size += stripe.size();
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      if(!stripe.isEmpty()) return false;
+    }
+    return true;
+  }
+
+  @Override
+  public boolean containsKey(final @Nullable Object key) {
+    return this.stripe(key).containsKey(key);
+  }
+
+  @Override
+  public @Nullable V get(final @Nullable Object key) {
+    return this.stripe(key).get(key);
+  }
+
+  @Override
+  public @NonNull V getOrDefault(final @Nullable Object key, final @NonNull V defaultValue) {
+    return this.stripe(key).getOrDefault(key, defaultValue);
+  }
+
+  @Override
+  public @Nullable V computeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
+    return this.stripe(key).computeIfAbsent(key, mappingFunction);
+  }
+
+  @Override
+  public @Nullable V computeIfPresent(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    return this.stripe(key).computeIfPresent(key, remappingFunction);
+  }
+
+  @Override
+  public @Nullable V compute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    return this.stripe(key).compute(key, remappingFunction);
+  }
+
+  @Override
+  public @Nullable V putIfAbsent(final @Nullable K key, final @NonNull V value) {
+    return this.stripe(key).putIfAbsent(key, value);
+  }
+
+  @Override
+  public @Nullable V put(final @Nullable K key, final @NonNull V value) {
+    return this.stripe(key).put(key, value);
+  }
+
+  @Override
+  public @Nullable V remove(final @Nullable Object key) {
+    return this.stripe(key).remove(key);
+  }
+
+  @Override
+  public boolean remove(final @Nullable Object key, final @NonNull Object value) {
+    return this.stripe(key).remove(key, value);
+  }
+
+  @Override
+  public @Nullable V replace(final @Nullable K key, final @NonNull V value) {
+    return this.stripe(key).replace(key, value);
+  }
+
+  @Override
+  public boolean replace(final @Nullable K key, final @NonNull V oldValue, final @NonNull V newValue) {
+    return this.stripe(key).replace(key, oldValue, newValue);
+  }
+
+  // Bulk Operations
+
+  @Override
+  public void forEach(final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      stripe.forEach(action);
+    }
+  }
+
+  @Override
+  public void replaceAll(final @NonNull BiFunction<? super K, ? super V, ? extends V> function) {
+    requireNonNull(function, "function");
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      stripe.replaceAll(function);
+    }
+  }
+
+  @Override
+  public void putAll(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    final Map<K, V>[] partitions = this.partition(map);
+    for(int i = 0; i < partitions.length; i++) {
+      if(partitions[i] != null) this.stripes[i].putAll(partitions[i]);
+    }
+  }
+
+  @Override
+  public void putAllIfAbsent(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    final Map<K, V>[] partitions = this.partition(map);
+    for(int i = 0; i < partitions.length; i++) {
+      if(partitions[i] != null) this.stripes[i].putAllIfAbsent(partitions[i]);
+    }
+  }
+
+  @Override
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  public void computeAll(final @NonNull Collection<? extends K> keys, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(keys, "keys");
+    requireNonNull(remappingFunction, "remappingFunction");
+    final List<K>[] partitions = new List[this.stripes.length];
+    for(final K key : keys) {
+      final int index = this.index(key);
+      if(partitions[index] == null) partitions[index] = new ArrayList<>();
+      partitions[index].add(key);
+    }
+    for(int i = 0; i < partitions.length; i++) {
+      if(partitions[i] != null) this.stripes[i].computeAll(partitions[i], remappingFunction);
+    }
+  }
+
+  @Override
+  public void clear() {
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      stripe.clear();
+    }
+  }
+
+  // Stats
+
+  @Override
+  public @NonNull Stats stats() {
+    SyncMapImpl.StatsImpl stats = SyncMapImpl.StatsImpl.EMPTY;
+    for(final SyncMapImpl<K, V> stripe : this.stripes) {
+      stats = stats.plus(stripe.stats());
+    }
+    return stats;
+  }
+
+  // Views
+
+  @Override
+  public @NonNull Set<Entry<K, V>> entrySet() {
+    if(this.entrySet != null) return this.entrySet;
+    return this.entrySet = new EntrySetView();
+  }
+
+  @Override
+  public @NonNull Set<K> keySet() {
+    if(this.keySet != null) return this.keySet;
+    return this.keySet = new KeySetView();
+  }
+
+  @Override
+  public @NonNull Collection<V> values() {
+    if(this.values != null) return this.values;
+    return this.values = new ValuesView();
+  }
+
+  private @NonNull SyncMapImpl<K, V> stripe(final @Nullable Object key) {
+    return this.stripes[this.index(key)];
+  }
+
+  /**
+   * Splits the mappings up by stripe, so that each stripe can copy its own
+   * mappings in bulk, leaving {@code null} for the stripes without any.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked"})
+  private Map<K, V>[] partition(final @NonNull Map<? extends K, ? extends V> map) {
+    final Map<K, V>[] partitions = new Map[this.stripes.length];
+    for(final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      final int index = this.index(entry.getKey());
+      if(partitions[index] == null) partitions[index] = new HashMap<>();
+      partitions[index].put(entry.getKey(), entry.getValue());
+    }
+    return partitions;
+  }
+
+  private int index(final @Nullable Object key) {
+    // The backing maps select buckets with the low bits of the hash, so the
+    // stripe is selected with the high bits of a mixed hash instead.
+    final int hash = key == null ? 0 : key.hashCode() * 0x9E3779B9;
+    return this.shift == 32 ? 0 : hash >>> this.shift;
+  }
+
+  /* package */ final class EntrySetView extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public int size() {
+      return StripedSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      return StripedSyncMapImpl.this.stripe(((Map.Entry<?, ?>) entry).getKey()).entrySet().contains(entry);
+    }
+
+    @Override
+    public boolean add(final @NonNull Entry<K, V> entry) {
+      requireNonNull(entry, "entry");
+      return StripedSyncMapImpl.this.put(entry.getKey(), entry.getValue()) == null;
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object entry) {
+      if(!(entry instanceof Map.Entry)) return false;
+      final Map.Entry<?, ?> mapEntry = (Entry<?, ?>) entry;
+      return StripedSyncMapImpl.this.remove(mapEntry.getKey(), mapEntry.getValue());
+    }
+
+    @Override
+    public void clear() {
+      StripedSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<Map.Entry<K, V>> iterator() {
+      return new StripeIterator<>(stripe -> stripe.entrySet().iterator());
+    }
+
+    @Override
+    public @NonNull Spliterator<Map.Entry<K, V>> spliterator() {
+      return new StripeSpliterator<>(stripe -> stripe.entrySet().spliterator(), Spliterator.NONNULL | Spliterator.DISTINCT, 0, StripedSyncMapImpl.this.stripes.length);
+    }
+  }
+
+  /* package */ final class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return StripedSyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object key) {
+      return StripedSyncMapImpl.this.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key) {
+      return StripedSyncMapImpl.this.remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      StripedSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<K> iterator() {
+      return new StripeIterator<>(stripe -> stripe.keySet().iterator());
+    }
+
+    @Override
+    public @NonNull Spliterator<K> spliterator() {
+      return new StripeSpliterator<>(stripe -> stripe.keySet().spliterator(), Spliterator.DISTINCT, 0, StripedSyncMapImpl.this.stripes.length);
+    }
+  }
+
+  /* package */ final class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return StripedSyncMapImpl.this.size();
+    }
+
+    @Override
+    public void clear() {
+      StripedSyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<V> iterator() {
+      return new StripeIterator<>(stripe -> stripe.values().iterator());
+    }
+
+    @Override
+    public @NonNull Spliterator<V> spliterator() {
+      return new StripeSpliterator<>(stripe -> stripe.values().spliterator(), Spliterator.NONNULL, 0, StripedSyncMapImpl.this.stripes.length);
+    }
+  }
+
+  /* package */ final class StripeIterator<T> implements Iterator<T> {
+    private final Function<SyncMapImpl<K, V>, Iterator<T>> function;
+    private int index;
+    private Iterator<T> next;
+    private Iterator<T> current;
+
+    /* package */ StripeIterator(final @NonNull Function<SyncMapImpl<K, V>, Iterator<T>> function) {
+      this.function = function;
+      this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != null;
+    }
+
+    @Override
+    public T next() {
+      final Iterator<T> current;
+      if((current = this.next) == null) throw new NoSuchElementException();
+      final T element = current.next();
+      this.current = current;
+      if(!current.hasNext()) this.advance();
+      return element;
+    }
+
+    @Override
+    public void remove() {
+      final Iterator<T> current;
+      if((current = this.current) == null) throw new IllegalStateException();
+      this.current = null;
+      current.remove();
+    }
+
+    private void advance() {
+      this.next = null;
+      final SyncMapImpl<K, V>[] stripes = StripedSyncMapImpl.this.stripes;
+      while(this.index < stripes.length) {
+        final Iterator<T> iterator = this.function.apply(stripes[this.index++]);
+        if(iterator.hasNext()) {
+          this.next = iterator;
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Splits over a range of stripes, halving the range until a single
+   * stripe remains, after which the splitting is left to that stripe.
+   */
+  /* package */ final class StripeSpliterator<T> implements Spliterator<T> {
+    private final Function<SyncMapImpl<K, V>, Spliterator<T>> function;
+    private final int characteristics;
+    private int index;
+    private int fence;
+    private Spliterator<T> current;
+
+    /* package */ StripeSpliterator(final @NonNull Function<SyncMapImpl<K, V>, Spliterator<T>> function, final int characteristics, final int index, final int fence) {
+      this.function = function;
+      this.characteristics = characteristics | Spliterator.CONCURRENT;
+      this.index = index;
+      this.fence = fence;
+    }
+
+    @Override
+    public boolean tryAdvance(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      for(; ; ) {
+        if(this.current == null) {
+          if(this.index >= this.fence) return false;
+          this.current = this.function.apply(StripedSyncMapImpl.this.stripes[this.index]);
+        }
+        if(this.current.tryAdvance(action)) return true;
+        this.current = null;
+        this.index++;
+      }
+    }
+
+    @Override
+    public void forEachRemaining(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      if(this.current != null) {
+        this.current.forEachRemaining(action);
+        this.current = null;
+        this.index++;
+      }
+      for(; this.index < this.fence; this.index++) {
+        this.function.apply(StripedSyncMapImpl.this.stripes[this.index]).forEachRemaining(action);
+      }
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+      if(this.fence - this.index > 1) {
+        // The spliterator is not ordered, so the current stripe can stay
+        // with this half while the other half is split off.
+        final int middle = (this.index + this.fence) >>> 1;
+        final StripeSpliterator<T> split = new StripeSpliterator<>(this.function, this.characteristics, middle, this.fence);
+        this.fence = middle;
+        return split;
+      }
+      if(this.current == null) {
+        if(this.index >= this.fence) return null;
+        this.current = this.function.apply(StripedSyncMapImpl.this.stripes[this.index]);
+      }
+      return this.current.trySplit();
+    }
+
+    @Override
+    public long estimateSize() {
+      long size = 0;
+      int index = this.index;
+      if(this.current != null) {
+        size += this.current.estimateSize();
+        index++;
+      }
+      for(; index < this.fence; index++) {
+        size += StripedSyncMapImpl.this.stripes[index].size();
+      }
+      return size;
+    }
+
+    @Override
+    public int characteristics() {
+      return this.characteristics;
+    }
+  }
+}
@@ -27,14 +27,28 @@ package space.vectrix.flare;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.function.LongBinaryOperator;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collector;
+import java.util.stream.StreamSupport;
+
+import static java.util.Objects.requireNonNull;
 
 /**
  * A concurrent map, internally backed by a non-thread-safe map but carefully
@@ -135,6 +149,27 @@ public interface SyncMap<K, V> extends ConcurrentMap<K, V> {
     return new SyncMapImpl<>(function, initialCapacity);
   }
 
+  /**
+   * Returns a new sync map, backed by the provided {@link Map} implementation
+   * with a provided initial capacity, that promotes its {@code dirty} map
+   * according to the provided {@link PromotionPolicy}.
+   *
+   * @param function the map creation function
+   * @param initialCapacity the map initial capacity
+   * @param promotionPolicy the promotion policy
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a sync map
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull SyncMap<K, V> of(final @NonNull IntFunction<Map<K, ExpungingEntry<V>>> function, final int initialCapacity, final @NonNull PromotionPolicy promotionPolicy) {
+    return SyncMap.<K, V>builder()
+      .backingMap(function)
+      .initialCapacity(initialCapacity)
+      .promotionPolicy(promotionPolicy)
+      .build();
+  }
+
   /**
    * Returns a new mutable set view of a sync map, backed by the provided
    * {@link Map} implementation with a provided initial capacity.
@@ -149,6 +184,100 @@ public interface SyncMap<K, V> extends ConcurrentMap<K, V> {
     return Collections.newSetFromMap(new SyncMapImpl<>(function, initialCapacity));
   }
 
+  /**
+   * Returns a new sync map, backed by the provided {@link Map} implementation
+   * with a provided initial capacity, that spreads its keys across a number of
+   * stripes.
+   *
+   * <p>Each stripe has its own {@code read} map, {@code dirty} map and lock, and
+   * is promoted independently of the others, so inserting new keys that fall
+   * into different stripes does not contend on a single lock. Operations over
+   * the whole map, such as {@link #size()}, {@link #clear()} and iteration,
+   * visit the stripes one at a time.</p>
+   *
+   * @param function the map creation function
+   * @param initialCapacity the map initial capacity, split between the stripes
+   * @param stripes the amount of stripes, rounded up to a power of two
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a sync map
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull SyncMap<K, V> striped(final @NonNull IntFunction<Map<K, ExpungingEntry<V>>> function, final int initialCapacity, final int stripes) {
+    return SyncMap.<K, V>builder()
+      .backingMap(function)
+      .initialCapacity(initialCapacity)
+      .stripes(stripes)
+      .build();
+  }
+
+  /**
+   * Returns a new sync map, that stores its keys and values in flat
+   * open-addressed arrays rather than in a backing {@link Map}.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a sync map
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull SyncMap<K, V> flat() {
+    return new FlatSyncMapImpl<>(16);
+  }
+
+  /**
+   * Returns a new sync map, that stores its keys and values in flat
+   * open-addressed arrays rather than in a backing {@link Map}, sized for
+   * the provided initial capacity.
+   *
+   * <p>No object is allocated for each mapping, as removed keys and moved
+   * slots are marked by sentinels in the array of values itself. Reads and
+   * writes of present keys are lock-free, while inserting a new key or
+   * resizing the arrays holds a single lock.</p>
+   *
+   * <p>The functions passed to {@code compute} and {@code computeIfPresent}
+   * may be applied more than once for a present key, if its value is changed
+   * concurrently.</p>
+   *
+   * @param initialCapacity the map initial capacity
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a sync map
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull SyncMap<K, V> flat(final int initialCapacity) {
+    return new FlatSyncMapImpl<>(initialCapacity);
+  }
+
+  /**
+   * Returns a new builder for a sync map, backed by a {@link HashMap} with
+   * an initial capacity of {@code 16} unless configured otherwise.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a sync map builder
+   * @since 2.1.0
+   */
+  static <K, V> @NonNull Builder<K, V> builder() {
+    return new SyncMapBuilderImpl<>();
+  }
+
+  /**
+   * Returns a collector that collects the elements into a new sync map,
+   * backed by a {@link HashMap}, as described by
+   * {@link Builder#collector(Function, Function)}.
+   *
+   * @param keyMapper the function mapping an element to its key
+   * @param valueMapper the function mapping an element to its value
+   * @param <T> the element type
+   * @param <K> the key type
+   * @param <V> the value type
+   * @return a collector
+   * @since 2.1.0
+   */
+  static <T, K, V> @NonNull Collector<T, ?, SyncMap<K, V>> collector(final @NonNull Function<? super T, ? extends K> keyMapper, final @NonNull Function<? super T, ? extends V> valueMapper) {
+    return SyncMap.<K, V>builder().collector(keyMapper, valueMapper);
+  }
+
   /**
    * {@inheritDoc}
    *
@@ -164,9 +293,9 @@ public interface SyncMap<K, V> extends ConcurrentMap<K, V> {
   /**
    * {@inheritDoc}
    *
-   * This implementation is {@code O(n)} in nature due to the need to check for any expunged entries. Likewise, as
-   * with other concurrent collections, the value obtained by this method may be out of date by the time this method
-   * returns.
+   * This implementation is {@code O(1)}, as the entries maintain a shared count as their values are set and cleared,
+   * and does not promote the map. Likewise, as with other concurrent collections, the value obtained by this method
+   * may be out of date by the time this method returns.
    *
    * @return the size of all the mappings contained in this map
    */
@@ -182,6 +311,608 @@ public interface SyncMap<K, V> extends ConcurrentMap<K, V> {
   @Override
   void clear();
 
+  /**
+   * {@inheritDoc}
+   *
+   * A map backed by a {@code read} and a {@code dirty} map sets the values of the keys already in the read map without
+   * the lock, and then inserts the new keys while holding the lock only once, rather than once for each new key. If at
+   * least as many keys were inserted as the map held, as when loading the map, the dirty map is promoted right away.
+   *
+   * @param map the mappings to copy
+   */
+  @Override
+  void putAll(final @NonNull Map<? extends K, ? extends V> map);
+
+  /**
+   * Performs the given action for each mapping in this map, in parallel on the
+   * {@link ForkJoinPool#commonPool()} if this map has at least
+   * {@code parallelismThreshold} mappings.
+   *
+   * <p>As with {@link ConcurrentHashMap#forEach(long, BiConsumer)}, a threshold of
+   * {@link Long#MAX_VALUE} always performs the action sequentially, while a threshold
+   * of {@code 1} allows the most parallelism.</p>
+   *
+   * @param parallelismThreshold the estimated amount of mappings needed to perform the action in parallel
+   * @param action the action
+   * @since 2.1.0
+   */
+  default void forEach(final long parallelismThreshold, final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    StreamSupport.stream(this.entrySet().spliterator(), this.size() >= parallelismThreshold)
+      .forEach(entry -> action.accept(entry.getKey(), entry.getValue()));
+  }
+
+  /**
+   * Returns a non-null result of the search function applied to a mapping in
+   * this map, or {@code null} if there is none, searching in parallel on the
+   * {@link ForkJoinPool#commonPool()} if this map has at least
+   * {@code parallelismThreshold} mappings.
+   *
+   * <p>Once a result is found, the remaining mappings are not searched. As the
+   * mappings are not ordered, any of the results may be returned.</p>
+   *
+   * @param parallelismThreshold the estimated amount of mappings needed to search in parallel
+   * @param searchFunction the search function, returning a non-null result on success
+   * @param <U> the result type
+   * @return a result, or null if there is none
+   * @since 2.1.0
+   */
+  default <U> @Nullable U search(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    requireNonNull(searchFunction, "searchFunction");
+    return StreamSupport.stream(this.entrySet().spliterator(), this.size() >= parallelismThreshold)
+      .<U>map(entry -> searchFunction.apply(entry.getKey(), entry.getValue()))
+      .filter(Objects::nonNull)
+      .findAny()
+      .orElse(null);
+  }
+
+  /**
+   * Returns the result of accumulating the given transformation of all the
+   * mappings in this map using the given reducer, or {@code null} if there
+   * is none, reducing in parallel on the {@link ForkJoinPool#commonPool()}
+   * if this map has at least {@code parallelismThreshold} mappings.
+   *
+   * @param parallelismThreshold the estimated amount of mappings needed to reduce in parallel
+   * @param transformer the transformer, returning null for the mappings that should be skipped
+   * @param reducer the commutative and associative reducer
+   * @param <U> the result type
+   * @return the reduced result, or null if there is none
+   * @since 2.1.0
+   */
+  default <U> @Nullable U reduce(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> transformer, final @NonNull BiFunction<? super U, ? super U, ? extends U> reducer) {
+    requireNonNull(transformer, "transformer");
+    requireNonNull(reducer, "reducer");
+    return StreamSupport.stream(this.entrySet().spliterator(), this.size() >= parallelismThreshold)
+      .<U>map(entry -> transformer.apply(entry.getKey(), entry.getValue()))
+      .filter(Objects::nonNull)
+      .reduce(reducer::apply)
+      .orElse(null);
+  }
+
+  /**
+   * Returns the result of accumulating the given transformation of all the
+   * values in this map using the given reducer and basis, reducing in
+   * parallel on the {@link ForkJoinPool#commonPool()} if this map has at
+   * least {@code parallelismThreshold} mappings.
+   *
+   * @param parallelismThreshold the estimated amount of mappings needed to reduce in parallel
+   * @param transformer the transformer
+   * @param basis the identity of the reducer
+   * @param reducer the commutative and associative reducer
+   * @return the reduced result
+   * @since 2.1.0
+   */
+  default long reduceValuesToLong(final long parallelismThreshold, final @NonNull ToLongFunction<? super V> transformer, final long basis, final @NonNull LongBinaryOperator reducer) {
+    requireNonNull(transformer, "transformer");
+    requireNonNull(reducer, "reducer");
+    return StreamSupport.stream(this.values().spliterator(), this.size() >= parallelismThreshold)
+      .mapToLong(transformer)
+      .reduce(basis, reducer);
+  }
+
+  /**
+   * Copies the mappings of the provided map into this map, for each key that
+   * has no value in this map, as with {@link #putIfAbsent(Object, Object)}.
+   *
+   * <p>The mappings are copied in bulk, as with {@link #putAll(Map)}.</p>
+   *
+   * @param map the mappings to copy
+   * @since 2.1.0
+   */
+  default void putAllIfAbsent(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    map.forEach(this::putIfAbsent);
+  }
+
+  /**
+   * Computes a mapping for each of the provided keys and its current value,
+   * as with {@link #compute(Object, BiFunction)}.
+   *
+   * <p>As with {@link #putAll(Map)}, a map backed by a {@code read} and a
+   * {@code dirty} map computes the keys already in the {@code read} map
+   * without the lock, and then computes the remaining keys while holding
+   * the lock only once.</p>
+   *
+   * @param keys the keys to compute
+   * @param remappingFunction the remapping function
+   * @since 2.1.0
+   */
+  default void computeAll(final @NonNull Collection<? extends K> keys, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(keys, "keys");
+    requireNonNull(remappingFunction, "remappingFunction");
+    for(final K key : keys) {
+      this.compute(key, remappingFunction);
+    }
+  }
+
+  /**
+   * Returns a snapshot of the statistics recorded by this map.
+   *
+   * <p>If the map was not built with {@link Builder#recordStats()}, every
+   * statistic is {@code 0}.</p>
+   *
+   * @return the stats snapshot
+   * @since 2.1.0
+   */
+  default @NonNull Stats stats() {
+    return SyncMapImpl.StatsImpl.EMPTY;
+  }
+
+  /**
+   * A snapshot of the statistics recorded by a sync map, counted since
+   * the map was created.
+   *
+   * @since 2.1.0
+   */
+  interface Stats {
+    /**
+     * Returns the amount of times the lock was acquired.
+     *
+     * @return the lock acquisitions
+     * @since 2.1.0
+     */
+    long locks();
+
+    /**
+     * Returns the total nanoseconds the lock was held for.
+     *
+     * @return the lock hold time
+     * @since 2.1.0
+     */
+    long lockTime();
+
+    /**
+     * Returns the amount of times an operation could not be satisfied by
+     * the {@code read} map and fell back to the {@code dirty} map.
+     *
+     * @return the misses
+     * @since 2.1.0
+     */
+    long misses();
+
+    /**
+     * Returns the amount of times the {@code dirty} map was promoted to the
+     * {@code read} map.
+     *
+     * @return the promotions
+     * @since 2.1.0
+     */
+    long promotions();
+
+    /**
+     * Returns the amount of times a new {@code dirty} map was created from
+     * the {@code read} map.
+     *
+     * @return the dirty map rebuilds
+     * @since 2.1.0
+     */
+    long dirtyRebuilds();
+
+    /**
+     * Returns the amount of removed entries that were expunged, instead of
+     * being moved over to a new {@code dirty} map.
+     *
+     * @return the expunged entries
+     * @since 2.1.0
+     */
+    long expunged();
+  }
+
+  /**
+   * A builder for a sync map.
+   *
+   * @param <K> the key type
+   * @param <V> the value type
+   * @since 2.1.0
+   */
+  interface Builder<K, V> {
+    /**
+     * Sets the {@link Map} implementation backing the sync map.
+     *
+     * @param function the map creation function
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> backingMap(final @NonNull IntFunction<Map<K, ExpungingEntry<V>>> function);
+
+    /**
+     * Sets the initial capacity of the backing map.
+     *
+     * @param initialCapacity the map initial capacity
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> initialCapacity(final int initialCapacity);
+
+    /**
+     * Sets the amount of stripes the keys are spread across, as described
+     * by {@link SyncMap#striped(IntFunction, int, int)}.
+     *
+     * @param stripes the amount of stripes, rounded up to a power of two
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> stripes(final int stripes);
+
+    /**
+     * Sets the policy that decides when the {@code dirty} map is promoted.
+     *
+     * @param promotionPolicy the promotion policy
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> promotionPolicy(final @NonNull PromotionPolicy promotionPolicy);
+
+    /**
+     * Sets the executor the promotions are handed off to.
+     *
+     * <p>By default, the operation that triggers a promotion performs it,
+     * along with moving a few {@code read} entries over to the {@code dirty}
+     * map on each locked operation. With an executor, both are left to a
+     * single background task, which releases the lock in between moving
+     * the entries over, so that the foreground operations never pay for
+     * them. Until the task runs, the operations keep falling back to the
+     * {@code dirty} map. If the executor rejects the task, the promotion is
+     * performed by the triggering operation instead.</p>
+     *
+     * <p>Operations that require the {@code dirty} map to be promoted, such
+     * as iteration, still promote it themselves.</p>
+     *
+     * @param promotionExecutor the promotion executor
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> promotionExecutor(final @NonNull Executor promotionExecutor);
+
+    /**
+     * Sets the listener notified of each promotion.
+     *
+     * @param promotionListener the promotion listener
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> promotionListener(final @NonNull PromotionListener promotionListener);
+
+    /**
+     * Enables recording the {@link Stats} of the sync map, which are not
+     * recorded by default.
+     *
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> recordStats();
+
+    /**
+     * Enables computing the values of absent keys outside of the lock.
+     *
+     * <p>By default, {@link SyncMap#computeIfAbsent(Object, Function)}
+     * calls the mapping function for a new key while holding the lock, so
+     * a slow mapping function blocks every other new key and every miss.
+     * With this enabled, the mapping function is called without the lock,
+     * and only once at a time for each key, with any concurrent callers for
+     * the same key waiting for its result, or its exception. The mapping
+     * function must not compute the same key again.</p>
+     *
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> singleFlight();
+
+    /**
+     * Enables looking up the keys of the {@code dirty} map while holding a
+     * shared lock.
+     *
+     * <p>By default, a key missing from the {@code read} map is looked up in
+     * the {@code dirty} map while holding the same exclusive lock as the
+     * mutations, so the concurrent reads of newly added keys wait for each
+     * other until the {@code dirty} map is promoted. With this enabled, the
+     * lookups share a read lock instead, and only take the exclusive lock
+     * once their misses call for a promotion. The backing map must then
+     * support concurrent lookups, as a {@link HashMap} does, while the
+     * mutations of the map are slightly slower.</p>
+     *
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> sharedDirtyReads();
+
+    /**
+     * Enables tracking the keys added to the {@code dirty} map in a filter,
+     * so that the keys absent from both maps are looked up without the lock.
+     *
+     * <p>By default, a key missing from the {@code read} map is looked up in
+     * the {@code dirty} map while holding the lock, and counted as a miss,
+     * until the {@code dirty} map is promoted, even if the key is in neither
+     * map. With this enabled, {@link SyncMap#get(Object)},
+     * {@link SyncMap#containsKey(Object)} and {@link SyncMap#remove(Object)}
+     * first test a Bloom filter over the keys added since the last
+     * promotion, and return right away for the keys it has never seen. This
+     * suits maps probed for many keys that do not exist, at the cost of
+     * hashing each new key once more.</p>
+     *
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> absentKeyFilter();
+
+    /**
+     * Enables combining the inserts that miss the {@code read} map, so the
+     * concurrent writers of new keys share the lock.
+     *
+     * <p>By default, each {@link SyncMap#put(Object, Object)} and
+     * {@link SyncMap#putIfAbsent(Object, Object)} of a key missing from the
+     * {@code read} map takes the lock for itself, so the writers of new keys
+     * hand the lock over to each other one insert at a time. With this
+     * enabled, the insert is published instead, and whichever thread takes
+     * the lock applies all of the published inserts to the {@code dirty} map
+     * in a single pass, while the other writers wait for their insert to be
+     * applied. This suits many threads adding new keys at once, at the cost
+     * of an allocation for each insert.</p>
+     *
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> flatCombining();
+
+    /**
+     * Sets the maximum amount of mappings the sync map holds, turning it
+     * into a cache.
+     *
+     * <p>Once a new key takes the map over the maximum size, the least
+     * recently accessed mapping out of a small sample is evicted, which
+     * approximates evicting the least recently used mapping. The map may
+     * briefly exceed the maximum size while concurrent insertions are being
+     * evicted.</p>
+     *
+     * <p>Reads are still served from the {@code read} map without taking
+     * a lock, only recording the access. Unless the mappings also expire,
+     * the accesses are ordered by the insertions in between them, so that
+     * the reads do not have to read the time.</p>
+     *
+     * @param maximumSize the maximum size
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> maximumSize(final long maximumSize);
+
+    /**
+     * Sets the duration after which a mapping expires once it was created
+     * or its value last replaced, turning the sync map into a cache.
+     *
+     * <p>Expired mappings are no longer visible, and are removed when they
+     * are next accessed or sampled for eviction. Until then, they are still
+     * included in the {@link SyncMap#size()} of the map.</p>
+     *
+     * @param duration the duration
+     * @param unit the duration unit
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> expireAfterWrite(final long duration, final @NonNull TimeUnit unit);
+
+    /**
+     * Sets the duration after which a mapping expires once it was last
+     * read or written, turning the sync map into a cache.
+     *
+     * <p>Expired mappings are removed in the same way as described by
+     * {@link #expireAfterWrite(long, TimeUnit)}.</p>
+     *
+     * @param duration the duration
+     * @param unit the duration unit
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> expireAfterAccess(final long duration, final @NonNull TimeUnit unit);
+
+    /**
+     * Sets the source of the nanosecond times used for expiration, which
+     * is {@link System#nanoTime()} by default.
+     *
+     * @param ticker the ticker
+     * @return this builder
+     * @since 2.1.0
+     */
+    @NonNull Builder<K, V> ticker(final @NonNull LongSupplier ticker);
+
+    /**
+     * Returns a new sync map with the configured settings.
+     *
+     * @return a sync map
+     * @since 2.1.0
+     */
+    @NonNull SyncMap<K, V> build();
+
+    /**
+     * Returns a new sync map with the configured settings, holding the
+     * mappings of the provided map.
+     *
+     * <p>The mappings are loaded straight into the {@code read} map, which
+     * is sized for them, so the sync map starts out promoted and the first
+     * reads of the mappings never fall back to the {@code dirty} map. This
+     * suits maps that are filled once, such as at startup, and then mostly
+     * read.</p>
+     *
+     * <p>A sync map that is a cache has its mappings put one after another
+     * instead, so that they are evicted as usual.</p>
+     *
+     * @param map the mappings to load
+     * @return a sync map
+     * @since 2.1.0
+     */
+    @NonNull SyncMap<K, V> build(final @NonNull Map<? extends K, ? extends V> map);
+
+    /**
+     * Returns a collector that collects the elements into a new sync map
+     * with the configured settings, as described by {@link #build(Map)}.
+     *
+     * <p>As with {@link java.util.stream.Collectors#toMap(Function, Function)},
+     * the elements are first collected into a map, which may be done in
+     * parallel, and an {@link IllegalStateException} is thrown if two
+     * elements are mapped to the same key.</p>
+     *
+     * @param keyMapper the function mapping an element to its key
+     * @param valueMapper the function mapping an element to its value
+     * @param <T> the element type
+     * @return a collector
+     * @since 2.1.0
+     */
+    <T> @NonNull Collector<T, ?, SyncMap<K, V>> collector(final @NonNull Function<? super T, ? extends K> keyMapper, final @NonNull Function<? super T, ? extends V> valueMapper);
+  }
+
+  /**
+   * A listener notified each time the {@code dirty} map is promoted to the
+   * {@code read} map, such as to record the frequency and duration of the
+   * promotions.
+   *
+   * <p>The listener is called while holding the lock, so it should return
+   * quickly.</p>
+   *
+   * @since 2.1.0
+   */
+  @FunctionalInterface
+  interface PromotionListener {
+    /**
+     * Called after the {@code dirty} map has been promoted.
+     *
+     * @param size the amount of keys in the promoted map
+     * @param duration the nanoseconds taken by the promotion, including
+     *                 moving the remaining read entries over
+     * @since 2.1.0
+     */
+    void promoted(final int size, final long duration);
+  }
+
+  /**
+   * The policy that decides when the {@code dirty} map is promoted to
+   * the {@code read} map.
+   *
+   * <p>The policy is consulted while holding the lock, each time an
+   * operation has to fall back to the {@code dirty} map and each time a
+   * key is added to it, so it should be cheap to evaluate.</p>
+   *
+   * @since 2.1.0
+   */
+  @FunctionalInterface
+  interface PromotionPolicy {
+    /**
+     * Returns a policy that promotes once the amount of misses reaches the
+     * size of the {@code dirty} map, as the cost of the misses has then
+     * caught up with the cost of the promotion. This is the default policy.
+     *
+     * <p>The size includes the {@code read} entries that have yet to be
+     * moved over to the {@code dirty} map, so the policy does not promote
+     * early while the entries are being moved over.</p>
+     *
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    static @NonNull PromotionPolicy dirtySize() {
+      return (misses, writes, size, amended) -> misses >= size;
+    }
+
+    /**
+     * Returns a policy that promotes once the amount of misses reaches the
+     * provided ratio of the size of the {@code dirty} map.
+     *
+     * @param ratio the ratio of misses to the dirty map size
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    static @NonNull PromotionPolicy missRatio(final double ratio) {
+      if(!(ratio > 0)) throw new IllegalArgumentException("Ratio must be greater than 0");
+      return (misses, writes, size, amended) -> misses >= size * ratio;
+    }
+
+    /**
+     * Returns a policy that promotes once the amount of misses reaches the
+     * provided threshold, regardless of the size of the {@code dirty} map.
+     *
+     * @param threshold the amount of misses
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    static @NonNull PromotionPolicy misses(final int threshold) {
+      if(threshold <= 0) throw new IllegalArgumentException("Threshold must be greater than 0");
+      return (misses, writes, size, amended) -> misses >= threshold;
+    }
+
+    /**
+     * Returns a policy that promotes once the provided amount of keys have
+     * been added to the {@code dirty} map.
+     *
+     * @param threshold the amount of added keys
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    static @NonNull PromotionPolicy writes(final int threshold) {
+      if(threshold <= 0) throw new IllegalArgumentException("Threshold must be greater than 0");
+      return (misses, writes, size, amended) -> writes >= threshold;
+    }
+
+    /**
+     * Returns a policy that promotes on the first miss or added key after
+     * the provided duration has elapsed since the {@code dirty} map was
+     * created.
+     *
+     * @param duration the duration
+     * @param unit the duration unit
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    static @NonNull PromotionPolicy elapsed(final long duration, final @NonNull TimeUnit unit) {
+      if(duration < 0) throw new IllegalArgumentException("Duration must be greater than or equal to 0");
+      final long nanos = unit.toNanos(duration);
+      return (misses, writes, size, amended) -> System.nanoTime() - amended >= nanos;
+    }
+
+    /**
+     * Returns {@code true} if the {@code dirty} map should be promoted.
+     *
+     * @param misses the amount of misses since the dirty map was created
+     * @param writes the amount of keys added to the dirty map since it was created
+     * @param size the amount of keys in the dirty map, including the keys of
+     *     the read map that have yet to be moved over to it
+     * @param amended the {@link System#nanoTime()} at which the dirty map was created
+     * @return true if the dirty map should be promoted, otherwise false
+     * @since 2.1.0
+     */
+    boolean shouldPromote(final int misses, final int writes, final int size, final long amended);
+
+    /**
+     * Returns a policy that promotes when either this policy or the
+     * provided policy would promote.
+     *
+     * @param other the other policy
+     * @return the promotion policy
+     * @since 2.1.0
+     */
+    default @NonNull PromotionPolicy or(final @NonNull PromotionPolicy other) {
+      requireNonNull(other, "other");
+      return (misses, writes, size, amended) -> this.shouldPromote(misses, writes, size, amended)
+        || other.shouldPromote(misses, writes, size, amended);
+    }
+  }
+
   /**
    * The expunging entry the backing map wraps for its values.
    *
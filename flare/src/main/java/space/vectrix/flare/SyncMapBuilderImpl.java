@@ -0,0 +1,205 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+
+import static java.util.Objects.requireNonNull;
+
+/* package */ final class SyncMapBuilderImpl<K, V> implements SyncMap.Builder<K, V> {
+  /* package */ IntFunction<Map<K, SyncMap.ExpungingEntry<V>>> function = HashMap::new;
+  /* package */ int initialCapacity = 16;
+  /* package */ int stripes = 1;
+  /* package */ SyncMap.PromotionPolicy promotionPolicy = SyncMap.PromotionPolicy.dirtySize();
+  /* package */ @Nullable Executor promotionExecutor;
+  /* package */ SyncMap.@Nullable PromotionListener promotionListener;
+  /* package */ boolean recordStats;
+  /* package */ boolean singleFlight;
+  /* package */ boolean sharedDirtyReads;
+  /* package */ boolean absentKeyFilter;
+  /* package */ boolean flatCombining;
+  /* package */ long maximumSize = -1;
+  /* package */ long expireAfterWrite = -1;
+  /* package */ long expireAfterAccess = -1;
+  /* package */ LongSupplier ticker = System::nanoTime;
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> backingMap(final @NonNull IntFunction<Map<K, SyncMap.ExpungingEntry<V>>> function) {
+    this.function = requireNonNull(function, "function");
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> initialCapacity(final int initialCapacity) {
+    if(initialCapacity < 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
+    this.initialCapacity = initialCapacity;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> stripes(final int stripes) {
+    if(stripes <= 0 || stripes > (1 << 16)) throw new IllegalArgumentException("Stripes must be between 1 and 65536");
+    this.stripes = stripes;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> promotionPolicy(final SyncMap.@NonNull PromotionPolicy promotionPolicy) {
+    this.promotionPolicy = requireNonNull(promotionPolicy, "promotionPolicy");
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> promotionExecutor(final @NonNull Executor promotionExecutor) {
+    this.promotionExecutor = requireNonNull(promotionExecutor, "promotionExecutor");
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> promotionListener(final SyncMap.@NonNull PromotionListener promotionListener) {
+    this.promotionListener = requireNonNull(promotionListener, "promotionListener");
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> recordStats() {
+    this.recordStats = true;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> singleFlight() {
+    this.singleFlight = true;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> sharedDirtyReads() {
+    this.sharedDirtyReads = true;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> absentKeyFilter() {
+    this.absentKeyFilter = true;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> flatCombining() {
+    this.flatCombining = true;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> maximumSize(final long maximumSize) {
+    if(maximumSize < 0) throw new IllegalArgumentException("Maximum size must be greater than or equal to 0");
+    this.maximumSize = maximumSize;
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> expireAfterWrite(final long duration, final @NonNull TimeUnit unit) {
+    if(duration < 0) throw new IllegalArgumentException("Duration must be greater than or equal to 0");
+    this.expireAfterWrite = requireNonNull(unit, "unit").toNanos(duration);
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> expireAfterAccess(final long duration, final @NonNull TimeUnit unit) {
+    if(duration < 0) throw new IllegalArgumentException("Duration must be greater than or equal to 0");
+    this.expireAfterAccess = requireNonNull(unit, "unit").toNanos(duration);
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMapBuilderImpl<K, V> ticker(final @NonNull LongSupplier ticker) {
+    this.ticker = requireNonNull(ticker, "ticker");
+    return this;
+  }
+
+  @Override
+  public @NonNull SyncMap<K, V> build() {
+    if(this.maximumSize >= 0 || this.expireAfterWrite >= 0 || this.expireAfterAccess >= 0) return new CacheSyncMapImpl<>(this);
+    if(this.stripes > 1) return new StripedSyncMapImpl<>(this);
+    return new SyncMapImpl<>(this, this.initialCapacity);
+  }
+
+  @Override
+  public @NonNull SyncMap<K, V> build(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    if(this.maximumSize >= 0 || this.expireAfterWrite >= 0 || this.expireAfterAccess >= 0) {
+      final SyncMap<K, V> cache = new CacheSyncMapImpl<>(this);
+      cache.putAll(map);
+      return cache;
+    }
+    if(this.stripes > 1) return new StripedSyncMapImpl<>(this, map);
+    return new SyncMapImpl<>(this, map);
+  }
+
+  @Override
+  public <T> @NonNull Collector<T, ?, SyncMap<K, V>> collector(final @NonNull Function<? super T, ? extends K> keyMapper, final @NonNull Function<? super T, ? extends V> valueMapper) {
+    requireNonNull(keyMapper, "keyMapper");
+    requireNonNull(valueMapper, "valueMapper");
+    return Collectors.collectingAndThen(Collectors.toMap(keyMapper, valueMapper), this::build);
+  }
+
+  /**
+   * Returns a builder for the sync map backing a cache, with the same
+   * settings other than the cache settings.
+   *
+   * @param <W> the cache node type
+   * @return a builder
+   */
+  @SuppressWarnings("unchecked")
+  /* package */ <W> @NonNull SyncMapBuilderImpl<K, W> delegate() {
+    final SyncMapBuilderImpl<K, W> builder = new SyncMapBuilderImpl<>();
+    // The backing map only ever holds the expunging entries, whatever the
+    // type of their values, so the function is reused for the nodes.
+    builder.function = (IntFunction<Map<K, SyncMap.ExpungingEntry<W>>>) (IntFunction<?>) this.function;
+    builder.initialCapacity = this.initialCapacity;
+    builder.stripes = this.stripes;
+    builder.promotionPolicy = this.promotionPolicy;
+    builder.promotionExecutor = this.promotionExecutor;
+    builder.promotionListener = this.promotionListener;
+    builder.recordStats = this.recordStats;
+    builder.singleFlight = this.singleFlight;
+    builder.sharedDirtyReads = this.sharedDirtyReads;
+    builder.absentKeyFilter = this.absentKeyFilter;
+    builder.flatCombining = this.flatCombining;
+    return builder;
+  }
+}
@@ -27,26 +27,84 @@ package space.vectrix.flare;
 import org.checkerframework.checker.nullness.qual.NonNull;
 import org.checkerframework.checker.nullness.qual.Nullable;
 
+import java.util.AbstractCollection;
 import java.util.AbstractMap;
 import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static java.util.Objects.requireNonNull;
 
 /* package */ final class SyncMapImpl<K, V> extends AbstractMap<K, V> implements SyncMap<K, V> {
   /**
-   * A single implicit lock when dealing with {@code dirty} mutations.
+   * The amount of {@code read} entries moved over to the {@code dirty} map
+   * for each locked operation, while a transfer is in progress.
    */
-  private transient final Object lock = new Object();
+  private static final int TRANSFER_STRIDE = 64;
+
+  /**
+   * The amount of {@code read} entries moved over to the {@code dirty} map
+   * each time the lock is held by a background promotion.
+   */
+  private static final int ASYNC_TRANSFER_STRIDE = 1024;
+
+  /**
+   * The key the loads of the {@code null} key are tracked under.
+   */
+  private static final Object NULL_KEY = new Object();
+
+  /**
+   * The amount of times a thread waiting for its insert to be combined
+   * tries to take the lock, before parking until it is released.
+   */
+  private static final int COMBINE_SPINS = 64;
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicIntegerFieldUpdater<SyncMapImpl> MISSES = AtomicIntegerFieldUpdater
+    .newUpdater(SyncMapImpl.class, "misses");
+
+  @SuppressWarnings("rawtypes")
+  private static final AtomicReferenceFieldUpdater<SyncMapImpl, Insert> INSERTS = AtomicReferenceFieldUpdater
+    .newUpdater(SyncMapImpl.class, Insert.class, "inserts");
+
+  /**
+   * A single lock when dealing with {@code dirty} mutations, which a waiting
+   * virtual thread parks on instead of pinning its carrier thread.
+   */
+  private transient final Lock lock;
+
+  /**
+   * The lock shared by the lookups of the {@code dirty} map, which excludes
+   * the mutations holding the {@code lock}, or {@code null} if the lookups
+   * hold the {@code lock} as well.
+   */
+  private transient final @Nullable Lock sharedLock;
 
   /**
    * The read only map that does not require a lock and does not allow mutations.
@@ -68,37 +126,156 @@ import static java.util.Objects.requireNonNull;
    * Represents the amount of times an attempt has been made to access the
    * {@code dirty} map while {@code amended} is {@code true}.
    */
-  private transient int misses;
+  private transient volatile int misses;
+
+  /**
+   * Represents the amount of keys added to the {@code dirty} map since it
+   * was created.
+   */
+  private transient int writes;
+
+  /**
+   * The {@link System#nanoTime()} at which the {@code dirty} map was created.
+   */
+  private transient long amendedAt;
+
+  /**
+   * The amount of entries with a value, shared by both the {@code read} and
+   * {@code dirty} maps and passed to the entries that change it.
+   */
+  private transient final LongAdder count = new LongAdder();
+
+  /**
+   * The remaining {@code read} entries that have yet to be moved over to the
+   * {@code dirty} map, or {@code null} if there is no transfer in progress.
+   */
+  private transient Iterator<Map.Entry<K, ExpungingEntry<V>>> transfer;
+
+  /**
+   * The amount of {@code read} entries the {@code transfer} has yet to move
+   * over to the {@code dirty} map.
+   */
+  private transient int remaining;
 
   private transient final IntFunction<Map<K, ExpungingEntry<V>>> function;
 
+  private transient final PromotionPolicy promotionPolicy;
+
+  /**
+   * The executor promotions are handed off to, or {@code null} if the
+   * promotions are performed by the operation that triggers them.
+   */
+  private transient final @Nullable Executor promotionExecutor;
+
+  private transient final @Nullable PromotionListener promotionListener;
+
+  /**
+   * The amount of {@code read} entries moved over to the {@code dirty} map
+   * by each foreground operation, which is {@code 0} if the transfer is left
+   * to the background promotion.
+   */
+  private transient final int transferStride;
+
+  /**
+   * Represents whether a background promotion has been handed off to the
+   * {@code promotionExecutor} and has not finished yet.
+   */
+  private transient boolean promotionScheduled;
+
+  /**
+   * The recorded statistics, or {@code null} if they are not recorded.
+   */
+  private transient final @Nullable StatsCounter stats;
+
+  /**
+   * The loads in progress for the keys being computed outside of the lock,
+   * or {@code null} if new keys are computed while holding the lock.
+   */
+  private transient final @Nullable ConcurrentHashMap<Object, Load<V>> loads;
+
+  /**
+   * Whether the keys added to the {@code dirty} map are tracked by a
+   * {@code filter}.
+   */
+  private transient final boolean filtered;
+
+  /**
+   * The filter over the keys added to the current {@code dirty} map that
+   * were not in the {@code read} map, or {@code null} if there is no
+   * {@code dirty} map or the keys are not tracked.
+   */
+  private transient volatile @Nullable KeyFilter filter;
+
+  /**
+   * Whether the inserts that miss the {@code read} map are combined by the
+   * thread holding the lock.
+   */
+  private transient final boolean combining;
+
+  /**
+   * The stack of inserts waiting to be applied by the thread holding the
+   * lock, or {@code null} if there are none.
+   */
+  private transient volatile @Nullable Insert<K, V> inserts;
+
   private transient EntrySetView entrySet;
 
+  private transient KeySetView keySet;
+
+  private transient ValuesView values;
+
   /* package */ SyncMapImpl(final @NonNull IntFunction<Map<K, ExpungingEntry<V>>> function, final int initialCapacity) {
+    this(new SyncMapBuilderImpl<K, V>().backingMap(function), initialCapacity);
+  }
+
+  /* package */ SyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder, final int initialCapacity) {
+    this(builder, initialCapacity, Collections.emptyMap());
+  }
+
+  /* package */ SyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder, final @NonNull Map<? extends K, ? extends V> map) {
+    this(builder, map.size(), map);
+  }
+
+  private SyncMapImpl(final @NonNull SyncMapBuilderImpl<K, V> builder, final int initialCapacity, final @NonNull Map<? extends K, ? extends V> map) {
     if(initialCapacity < 0) throw new IllegalArgumentException("Initial capacity must be greater than 0");
-    this.function = function;
-    this.read = function.apply(initialCapacity);
+    this.function = builder.function;
+    this.promotionPolicy = builder.promotionPolicy;
+    this.promotionExecutor = builder.promotionExecutor;
+    this.promotionListener = builder.promotionListener;
+    this.transferStride = this.promotionExecutor != null ? 0 : SyncMapImpl.TRANSFER_STRIDE;
+    this.stats = builder.recordStats ? new StatsCounter() : null;
+    this.loads = builder.singleFlight ? new ConcurrentHashMap<>() : null;
+    this.filtered = builder.absentKeyFilter;
+    this.combining = builder.flatCombining;
+    if(builder.sharedDirtyReads) {
+      final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+      this.lock = lock.writeLock();
+      this.sharedLock = lock.readLock();
+    } else {
+      this.lock = new ReentrantLock();
+      this.sharedLock = null;
+    }
+    // The provided mappings are loaded straight into the read map, so the
+    // map starts out promoted, without a dirty map to fall back to.
+    final Map<K, ExpungingEntry<V>> read = this.function.apply(initialCapacity);
+    for(final Map.Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      read.put(entry.getKey(), new ExpungingEntryImpl<>(requireNonNull(entry.getValue(), "value")));
+    }
+    this.count.add(read.size());
+    this.read = read;
   }
 
   // Query Operations
 
   @Override
   public int size() {
-    this.promote();
-    int size = 0;
-    for(final ExpungingEntry<V> value : this.read.values()) {
-      if(value.exists()) size++;
-    }
-    return size;
+    final long count = this.count.sum();
+    return count < 0 ? 0 : (int) Math.min(count, Integer.MAX_VALUE);
   }
 
   @Override
   public boolean isEmpty() {
-    this.promote();
-    for(final ExpungingEntry<V> value : this.read.values()) {
-      if(value.exists()) return false;
-    }
-    return true;
+    return this.count.sum() <= 0;
   }
 
   @Override
@@ -122,9 +299,15 @@ import static java.util.Objects.requireNonNull;
 
   @SuppressWarnings("SuspiciousMethodCalls")
   private @Nullable ExpungingEntry<V> getEntry(final @Nullable Object key) {
-    ExpungingEntry<V> entry = this.read.get(key);
-    if(entry == null && this.amended) {
-      synchronized(this.lock) {
+    final Map<K, ExpungingEntry<V>> read = this.read;
+    ExpungingEntry<V> entry = read.get(key);
+    // The read map may have been promoted after it was loaded, in which
+    // case amended no longer describes it and the lock must be taken.
+    if(entry == null && (this.amended || read != this.read)) {
+      if(this.absent(read, key)) return null;
+      if(this.sharedLock != null) return this.getEntryShared(key);
+      final long lockedAt = this.lock();
+      try {
         if((entry = this.read.get(key)) == null && this.amended && this.dirty != null) {
           entry = this.dirty.get(key);
           // The slow path should be avoided, even if the value does
@@ -132,30 +315,87 @@ import static java.util.Objects.requireNonNull;
           // promote and take a faster path.
           this.missLocked();
         }
+      } finally {
+        this.unlock(lockedAt);
+      }
+    }
+    return entry;
+  }
+
+  /**
+   * Returns whether a key missing from the provided {@code read} map is also
+   * definitely absent from the {@code dirty} map, so that it can be looked up
+   * without the lock.
+   */
+  private boolean absent(final @NonNull Map<K, ExpungingEntry<V>> read, final @Nullable Object key) {
+    final KeyFilter filter = this.filter;
+    // The read map is checked again after the filter, as the filter is
+    // replaced once the read map is promoted or cleared.
+    return filter != null && !filter.mightContain(SyncMapImpl.hash(key)) && read == this.read;
+  }
+
+  /**
+   * Looks up a key missing from the {@code read} map while holding the shared
+   * lock, so that concurrent lookups of the {@code dirty} map do not wait for
+   * each other. The exclusive lock is only taken once the misses call for a
+   * promotion.
+   */
+  @SuppressWarnings("SuspiciousMethodCalls")
+  private @Nullable ExpungingEntry<V> getEntryShared(final @Nullable Object key) {
+    ExpungingEntry<V> entry;
+    boolean promote = false;
+    this.sharedLock.lock();
+    try {
+      if((entry = this.read.get(key)) == null && this.amended && this.dirty != null) {
+        entry = this.dirty.get(key);
+        // The misses are counted atomically, as other lookups may hold the
+        // shared lock at the same time.
+        final int misses = SyncMapImpl.MISSES.incrementAndGet(this);
+        if(this.stats != null) this.stats.misses.increment();
+        promote = this.promotionPolicy.shouldPromote(misses, this.writes, this.dirtySizeLocked(), this.amendedAt);
+      }
+    } finally {
+      this.sharedLock.unlock();
+    }
+    if(promote) {
+      final long lockedAt = this.lock();
+      try {
+        // Another lookup may have promoted the dirty map in the meantime.
+        if(this.amended && this.promotionPolicy.shouldPromote(this.misses, this.writes, this.dirtySizeLocked(), this.amendedAt)) {
+          this.requestPromotionLocked();
+        }
+      } finally {
+        this.unlock(lockedAt);
       }
     }
     return entry;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public @Nullable V computeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
     requireNonNull(mappingFunction, "mappingFunction");
-    ExpungingEntry<V> entry = this.read.get(key);
-    InsertionResult<V> result = entry != null ? entry.computeIfAbsent(key, mappingFunction) : null;
-    if(result != null && result.operation() == InsertionResultImpl.UPDATED) return result.current();
-    synchronized(this.lock) {
-      if((entry = this.read.get(key)) != null) {
+    if(this.loads != null) return this.load(key, mappingFunction);
+    ExpungingEntryImpl<V> entry = (ExpungingEntryImpl<V>) this.read.get(key);
+    Object result = entry != null ? entry.tryComputeIfAbsent(key, mappingFunction, this.count) : ExpungingEntryImpl.EXPUNGED;
+    if(result != ExpungingEntryImpl.EXPUNGED) return (V) result;
+    final long lockedAt = this.lock();
+    try {
+      if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
         // If the entry was expunged, unexpunge, add the entry
         // back to the dirty map.
-        if(entry.tryUnexpungeAndCompute(key, mappingFunction)) {
-          if(entry.exists()) this.dirty.put(key, entry);
+        if(entry.tryUnexpungeAndCompute(key, mappingFunction, this.count)) {
+          if(entry.exists()) {
+            this.dirty.put(key, entry);
+            this.writeLocked();
+          }
           return entry.get();
         } else {
-          result = entry.computeIfAbsent(key, mappingFunction);
+          result = entry.tryComputeIfAbsent(key, mappingFunction, this.count);
         }
-      } else if(this.dirty != null && (entry = this.dirty.get(key)) != null) {
-        result = entry.computeIfAbsent(key, mappingFunction);
-        if(result.current() == null) this.dirty.remove(key);
+      } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+        result = entry.tryComputeIfAbsent(key, mappingFunction, this.count);
+        if(result == null) this.dirty.remove(key);
         // The slow path should be avoided, even if the value does
         // not match or is present. So we mark a miss, to eventually
         // promote and take a faster path.
@@ -166,55 +406,105 @@ import static java.util.Objects.requireNonNull;
           // amended.
           this.dirtyLocked();
           this.amended = true;
+        } else {
+          // Continue moving the read map entries over to the dirty
+          // map, a small stride at a time.
+          this.transferLocked(this.transferStride);
         }
         final V computed = mappingFunction.apply(key);
-        if(computed != null) this.dirty.put(key, new ExpungingEntryImpl<>(computed));
+        if(computed != null) {
+          this.putDirtyLocked(key, computed);
+          this.writeLocked();
+        }
         return computed;
       }
+    } finally {
+      this.unlock(lockedAt);
+    }
+    return result != ExpungingEntryImpl.EXPUNGED ? (V) result : null;
+  }
+
+  /**
+   * Computes the value of an absent key outside of the lock, so that only
+   * a single load of the key is in progress at a time. Any concurrent
+   * callers for the same key wait for its result instead.
+   */
+  private @Nullable V load(final @Nullable K key, final @NonNull Function<? super K, ? extends V> mappingFunction) {
+    V value = this.get(key);
+    if(value != null) return value;
+    final Object loadKey = key != null ? key : SyncMapImpl.NULL_KEY;
+    final Load<V> load = new Load<>();
+    final Load<V> existing = this.loads.putIfAbsent(loadKey, load);
+    if(existing != null) {
+      if(existing.thread == Thread.currentThread()) throw new IllegalStateException("Recursive load of key " + key);
+      return existing.await();
+    }
+    try {
+      // The previous load may have finished after the key was checked,
+      // in which case its value is already present.
+      if((value = this.get(key)) == null && (value = mappingFunction.apply(key)) != null) {
+        final V previous = this.putIfAbsent(key, value);
+        if(previous != null) value = previous;
+      }
+      load.complete(value);
+      return value;
+    } catch(final Throwable throwable) {
+      load.completeExceptionally(throwable);
+      throw throwable;
+    } finally {
+      this.loads.remove(loadKey, load);
     }
-    return result.current();
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public @Nullable V computeIfPresent(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
     requireNonNull(remappingFunction, "remappingFunction");
-    ExpungingEntry<V> entry = this.read.get(key);
-    InsertionResult<V> result = entry != null ? entry.computeIfPresent(key, remappingFunction) : null;
-    if(result != null && result.operation() == InsertionResultImpl.UPDATED) return result.current();
-    synchronized(this.lock) {
-      if((entry = this.read.get(key)) != null) {
-        result = entry.computeIfPresent(key, remappingFunction);
-      } else if(this.dirty != null && (entry = this.dirty.get(key)) != null) {
-        result = entry.computeIfPresent(key, remappingFunction);
-        if(result.current() == null) this.dirty.remove(key);
+    ExpungingEntryImpl<V> entry = (ExpungingEntryImpl<V>) this.read.get(key);
+    Object result = entry != null ? entry.tryComputeIfPresent(key, remappingFunction, this.count) : ExpungingEntryImpl.EXPUNGED;
+    if(result != ExpungingEntryImpl.EXPUNGED) return (V) result;
+    final long lockedAt = this.lock();
+    try {
+      if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
+        result = entry.tryComputeIfPresent(key, remappingFunction, this.count);
+      } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+        result = entry.tryComputeIfPresent(key, remappingFunction, this.count);
+        if(result == null) this.dirty.remove(key);
         // The slow path should be avoided, even if the value does
         // not match or is present. So we mark a miss, to eventually
         // promote and take a faster path.
         this.missLocked();
       }
+    } finally {
+      this.unlock(lockedAt);
     }
-    return result != null ? result.current() : null;
+    return result != ExpungingEntryImpl.EXPUNGED ? (V) result : null;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public @Nullable V compute(final @Nullable K key, final @Nullable BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
     requireNonNull(remappingFunction, "remappingFunction");
-    ExpungingEntry<V> entry = this.read.get(key);
-    InsertionResult<V> result = entry != null ? entry.compute(key, remappingFunction) : null;
-    if(result != null && result.operation() == InsertionResultImpl.UPDATED) return result.current();
-    synchronized(this.lock) {
-      if((entry = this.read.get(key)) != null) {
+    ExpungingEntryImpl<V> entry = (ExpungingEntryImpl<V>) this.read.get(key);
+    Object result = entry != null ? entry.tryCompute(key, remappingFunction, this.count) : ExpungingEntryImpl.EXPUNGED;
+    if(result != ExpungingEntryImpl.EXPUNGED) return (V) result;
+    final long lockedAt = this.lock();
+    try {
+      if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
         // If the entry was expunged, unexpunge, add the entry
         // back to the dirty map if the value is not null.
-        if(entry.tryUnexpungeAndCompute(key, remappingFunction)) {
-          if(entry.exists()) this.dirty.put(key, entry);
+        if(entry.tryUnexpungeAndCompute(key, remappingFunction, this.count)) {
+          if(entry.exists()) {
+            this.dirty.put(key, entry);
+            this.writeLocked();
+          }
           return entry.get();
         } else {
-          result = entry.compute(key, remappingFunction);
+          result = entry.tryCompute(key, remappingFunction, this.count);
         }
-      } else if(this.dirty != null && (entry = this.dirty.get(key)) != null) {
-        result = entry.compute(key, remappingFunction);
-        if(result.current() == null) this.dirty.remove(key);
+      } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+        result = entry.tryCompute(key, remappingFunction, this.count);
+        if(result == null) this.dirty.remove(key);
         // The slow path should be avoided, even if the value does
         // not match or is present. So we mark a miss, to eventually
         // promote and take a faster path.
@@ -225,93 +515,119 @@ import static java.util.Objects.requireNonNull;
           // amended.
           this.dirtyLocked();
           this.amended = true;
+        } else {
+          // Continue moving the read map entries over to the dirty
+          // map, a small stride at a time.
+          this.transferLocked(this.transferStride);
         }
         final V computed = remappingFunction.apply(key, null);
-        if(computed != null) this.dirty.put(key, new ExpungingEntryImpl<>(computed));
+        if(computed != null) {
+          this.putDirtyLocked(key, computed);
+          this.writeLocked();
+        }
         return computed;
       }
+    } finally {
+      this.unlock(lockedAt);
     }
-    return result.current();
+    return result != ExpungingEntryImpl.EXPUNGED ? (V) result : null;
   }
 
   @Override
-  @SuppressWarnings("ConstantConditions")
+  @SuppressWarnings({"ConstantConditions", "unchecked"})
   public @Nullable V putIfAbsent(final @Nullable K key, final @NonNull V value) {
     requireNonNull(value, "value");
-    ExpungingEntry<V> entry = this.read.get(key);
-    InsertionResult<V> result = entry != null ? entry.setIfAbsent(value) : null;
-    if(result != null && result.operation() == InsertionResultImpl.UPDATED) return result.previous();
-    synchronized(this.lock) {
-      if((entry = this.read.get(key)) != null) {
-        // If the entry was expunged, unexpunge, add the entry
-        // back to the dirty map and return null, as we know there
-        // was no previous value.
-        if(entry.tryUnexpungeAndSet(value)) {
-          this.dirty.put(key, entry);
-          return null;
-        } else {
-          result = entry.setIfAbsent(value);
-        }
-      } else if(this.dirty != null && (entry = this.dirty.get(key)) != null) {
-        result = entry.setIfAbsent(value);
-        // The slow path should be avoided, even if the value does
-        // not match or is present. So we mark a miss, to eventually
-        // promote and take a faster path.
-        this.missLocked();
-      } else {
-        if(!this.amended) {
-          // Adds the first new key to the dirty map and marks it as
-          // amended.
-          this.dirtyLocked();
-          this.amended = true;
-        }
-        this.dirty.put(key, new ExpungingEntryImpl<>(value));
+    ExpungingEntryImpl<V> entry = (ExpungingEntryImpl<V>) this.read.get(key);
+    Object result = entry != null ? entry.trySetIfAbsent(value, this.count) : ExpungingEntryImpl.EXPUNGED;
+    if(result != ExpungingEntryImpl.EXPUNGED) return (V) result;
+    if(this.combining) return this.combine(new Insert<>(key, value, true));
+    final long lockedAt = this.lock();
+    try {
+      return this.putIfAbsentLocked(key, value);
+    } finally {
+      this.unlock(lockedAt);
+    }
+  }
+
+  @SuppressWarnings({"ConstantConditions", "unchecked"})
+  private @Nullable V putIfAbsentLocked(final @Nullable K key, final @NonNull V value) {
+    ExpungingEntryImpl<V> entry;
+    final Object result;
+    if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
+      // If the entry was expunged, unexpunge, add the entry
+      // back to the dirty map and return null, as we know there
+      // was no previous value.
+      if(entry.tryUnexpungeAndSet(value, this.count)) {
+        this.dirty.put(key, entry);
+        this.writeLocked();
         return null;
+      } else {
+        result = entry.trySetIfAbsent(value, this.count);
       }
+    } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+      result = entry.trySetIfAbsent(value, this.count);
+      // The slow path should be avoided, even if the value does
+      // not match or is present. So we mark a miss, to eventually
+      // promote and take a faster path.
+      this.missLocked();
+    } else {
+      this.insertLocked(key, value);
+      this.writeLocked();
+      return null;
     }
-    return result.previous();
+    return result != ExpungingEntryImpl.EXPUNGED ? (V) result : null;
   }
 
   @Override
-  @SuppressWarnings("ConstantConditions")
+  @SuppressWarnings({"ConstantConditions", "unchecked"})
   public @Nullable V put(final @Nullable K key, final @NonNull V value) {
     requireNonNull(value, "value");
-    ExpungingEntry<V> entry = this.read.get(key);
+    final ExpungingEntryImpl<V> entry = (ExpungingEntryImpl<V>) this.read.get(key);
     V previous = entry != null ? entry.get() : null;
-    if(entry != null && entry.trySet(value)) return previous;
-    synchronized(this.lock) {
-      if((entry = this.read.get(key)) != null) {
-        previous = entry.get();
-        // If the entry was expunged, unexpunge and add the entry
-        // back to the dirty map.
-        if(entry.tryUnexpungeAndSet(value)) {
-          this.dirty.put(key, entry);
-        } else {
-          entry.set(value);
-        }
-      } else if(this.dirty != null && (entry = this.dirty.get(key)) != null) {
-        previous = entry.get();
-        entry.set(value);
+    if(entry != null && entry.trySet(value, this.count)) return previous;
+    if(this.combining) return this.combine(new Insert<>(key, value, false));
+    final long lockedAt = this.lock();
+    try {
+      return this.putLocked(key, value);
+    } finally {
+      this.unlock(lockedAt);
+    }
+  }
+
+  @SuppressWarnings({"ConstantConditions", "unchecked"})
+  private @Nullable V putLocked(final @Nullable K key, final @NonNull V value) {
+    ExpungingEntryImpl<V> entry;
+    final V previous;
+    if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
+      previous = entry.get();
+      // If the entry was expunged, unexpunge and add the entry
+      // back to the dirty map.
+      if(entry.tryUnexpungeAndSet(value, this.count)) {
+        this.dirty.put(key, entry);
+        this.writeLocked();
       } else {
-        if(!this.amended) {
-          // Adds the first new key to the dirty map and marks it as
-          // amended.
-          this.dirtyLocked();
-          this.amended = true;
-        }
-        this.dirty.put(key, new ExpungingEntryImpl<>(value));
-        return null;
+        entry.set(value, this.count);
       }
+    } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+      previous = entry.get();
+      entry.set(value, this.count);
+    } else {
+      this.insertLocked(key, value);
+      this.writeLocked();
+      return null;
     }
     return previous;
   }
 
   @Override
-  @SuppressWarnings("SuspiciousMethodCalls")
+  @SuppressWarnings({"SuspiciousMethodCalls", "unchecked"})
   public @Nullable V remove(final @Nullable Object key) {
-    ExpungingEntry<V> entry = this.read.get(key);
-    if(entry == null && this.amended) {
-      synchronized(this.lock) {
+    final Map<K, ExpungingEntry<V>> read = this.read;
+    ExpungingEntry<V> entry = read.get(key);
+    if(entry == null && (this.amended || read != this.read)) {
+      if(this.absent(read, key)) return null;
+      final long lockedAt = this.lock();
+      try {
         if((entry = this.read.get(key)) == null && this.amended && this.dirty != null) {
           entry = this.dirty.remove(key);
           // The slow path should be avoided, even if the value does
@@ -319,20 +635,25 @@ import static java.util.Objects.requireNonNull;
           // promote and take a faster path.
           this.missLocked();
         }
+      } finally {
+        this.unlock(lockedAt);
       }
     }
-    return entry != null ? entry.clear() : null;
+    return entry != null ? ((ExpungingEntryImpl<V>) entry).clear(this.count) : null;
   }
 
   @Override
-  @SuppressWarnings("SuspiciousMethodCalls")
+  @SuppressWarnings({"SuspiciousMethodCalls", "unchecked"})
   public boolean remove(final @Nullable Object key, final @NonNull Object value) {
     requireNonNull(value, "value");
-    ExpungingEntry<V> entry = this.read.get(key);
-    if(entry == null && this.amended) {
-      synchronized(this.lock) {
+    final Map<K, ExpungingEntry<V>> read = this.read;
+    ExpungingEntry<V> entry = read.get(key);
+    if(entry == null && (this.amended || read != this.read)) {
+      if(this.absent(read, key)) return false;
+      final long lockedAt = this.lock();
+      try {
         if((entry = this.read.get(key)) == null && this.amended && this.dirty != null) {
-          final boolean present = ((entry = this.dirty.get(key)) != null && entry.replace(value, null));
+          final boolean present = ((entry = this.dirty.get(key)) != null && ((ExpungingEntryImpl<V>) entry).replace(value, null, this.count));
           if(present) this.dirty.remove(key);
           // The slow path should be avoided, even if the value does
           // not match or is present. So we mark a miss, to eventually
@@ -340,9 +661,11 @@ import static java.util.Objects.requireNonNull;
           this.missLocked();
           return present;
         }
+      } finally {
+        this.unlock(lockedAt);
       }
     }
-    return entry != null && entry.replace(value, null);
+    return entry != null && ((ExpungingEntryImpl<V>) entry).replace(value, null, this.count);
   }
 
   @Override
@@ -374,6 +697,103 @@ import static java.util.Objects.requireNonNull;
     }
   }
 
+  @Override
+  public void forEach(final long parallelismThreshold, final @NonNull BiConsumer<? super K, ? super V> action) {
+    requireNonNull(action, "action");
+    this.bulk(parallelismThreshold).forEach(that -> {
+      final V value;
+      if((value = that.getValue().get()) != null) {
+        action.accept(that.getKey(), value);
+      }
+    });
+  }
+
+  @Override
+  public <U> @Nullable U search(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> searchFunction) {
+    requireNonNull(searchFunction, "searchFunction");
+    return this.bulk(parallelismThreshold)
+      .<U>map(that -> {
+        final V value = that.getValue().get();
+        return value != null ? searchFunction.apply(that.getKey(), value) : null;
+      })
+      .filter(Objects::nonNull)
+      .findAny()
+      .orElse(null);
+  }
+
+  @Override
+  public <U> @Nullable U reduce(final long parallelismThreshold, final @NonNull BiFunction<? super K, ? super V, ? extends U> transformer, final @NonNull BiFunction<? super U, ? super U, ? extends U> reducer) {
+    requireNonNull(transformer, "transformer");
+    requireNonNull(reducer, "reducer");
+    return this.bulk(parallelismThreshold)
+      .<U>map(that -> {
+        final V value = that.getValue().get();
+        return value != null ? transformer.apply(that.getKey(), value) : null;
+      })
+      .filter(Objects::nonNull)
+      .reduce(reducer::apply)
+      .orElse(null);
+  }
+
+  @Override
+  public void putAll(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    this.putAll(map, false);
+  }
+
+  @Override
+  public void putAllIfAbsent(final @NonNull Map<? extends K, ? extends V> map) {
+    requireNonNull(map, "map");
+    this.putAll(map, true);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void computeAll(final @NonNull Collection<? extends K> keys, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    requireNonNull(keys, "keys");
+    requireNonNull(remappingFunction, "remappingFunction");
+    // Computes the keys of the read map without the lock first, so that
+    // only the remaining keys are computed while holding it.
+    List<K> remaining = null;
+    ExpungingEntryImpl<V> entry;
+    for(final K key : keys) {
+      if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null && entry.tryCompute(key, remappingFunction, this.count) != ExpungingEntryImpl.EXPUNGED) continue;
+      if(remaining == null) remaining = new ArrayList<>();
+      remaining.add(key);
+    }
+    if(remaining == null) return;
+    final long lockedAt = this.lock();
+    try {
+      final int size = this.read.size();
+      int writes = 0;
+      for(final K key : remaining) {
+        if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
+          // If the entry was expunged, unexpunge, add the entry
+          // back to the dirty map if the value is not null.
+          if(entry.tryUnexpungeAndCompute(key, remappingFunction, this.count)) {
+            if(entry.exists()) {
+              this.dirty.put(key, entry);
+              writes++;
+            }
+          } else {
+            entry.tryCompute(key, remappingFunction, this.count);
+          }
+        } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+          if(entry.tryCompute(key, remappingFunction, this.count) == null) this.dirty.remove(key);
+        } else {
+          final V computed = remappingFunction.apply(key, null);
+          if(computed != null) {
+            this.insertLocked(key, computed);
+            writes++;
+          }
+        }
+      }
+      this.writeAllLocked(writes, size);
+    } finally {
+      this.unlock(lockedAt);
+    }
+  }
+
   @Override
   public void replaceAll(final @NonNull BiFunction<? super K, ? super V, ? extends V> function) {
     requireNonNull(function, "function");
@@ -387,15 +807,41 @@ import static java.util.Objects.requireNonNull;
   }
 
   @Override
+  @SuppressWarnings("unchecked")
   public void clear() {
-    synchronized(this.lock) {
+    final long lockedAt = this.lock();
+    try {
+      // Expunges the entries from before the clear, so the operations still
+      // holding one look the key up again, rather than changing the count
+      // for an entry that is no longer in the map.
+      for(final ExpungingEntry<V> entry : this.read.values()) {
+        ((ExpungingEntryImpl<V>) entry).expunge(this.count);
+      }
+      if(this.dirty != null) {
+        for(final ExpungingEntry<V> entry : this.dirty.values()) {
+          ((ExpungingEntryImpl<V>) entry).expunge(this.count);
+        }
+      }
       this.read = this.function.apply(this.read.size());
+      this.filter = null;
       this.dirty = null;
+      this.transfer = null;
+      this.remaining = 0;
       this.amended = false;
       this.misses = 0;
+      this.writes = 0;
+    } finally {
+      this.unlock(lockedAt);
     }
   }
 
+  // Stats
+
+  @Override
+  public @NonNull Stats stats() {
+    return this.stats != null ? this.stats.snapshot() : StatsImpl.EMPTY;
+  }
+
   // Views
 
   @Override
@@ -404,39 +850,341 @@ import static java.util.Objects.requireNonNull;
     return this.entrySet = new EntrySetView();
   }
 
+  @Override
+  public @NonNull Set<K> keySet() {
+    if(this.keySet != null) return this.keySet;
+    return this.keySet = new KeySetView();
+  }
+
+  @Override
+  public @NonNull Collection<V> values() {
+    if(this.values != null) return this.values;
+    return this.values = new ValuesView();
+  }
+
+  /**
+   * Sets the values of the keys in the provided map, updating the keys of the
+   * {@code read} map without the lock first, and then the remaining keys
+   * while holding the lock once, rather than once for each new key.
+   */
+  @SuppressWarnings("unchecked")
+  private void putAll(final @NonNull Map<? extends K, ? extends V> map, final boolean onlyIfAbsent) {
+    List<K> keys = null;
+    List<V> values = null;
+    ExpungingEntryImpl<V> entry;
+    for(final Map.Entry<? extends K, ? extends V> that : map.entrySet()) {
+      final K key = that.getKey();
+      final V value = requireNonNull(that.getValue(), "value");
+      if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null
+        && (onlyIfAbsent ? entry.trySetIfAbsent(value, this.count) != ExpungingEntryImpl.EXPUNGED : entry.trySet(value, this.count))) continue;
+      if(keys == null) {
+        keys = new ArrayList<>();
+        values = new ArrayList<>();
+      }
+      keys.add(key);
+      values.add(value);
+    }
+    if(keys == null) return;
+    final long lockedAt = this.lock();
+    try {
+      final int size = this.read.size();
+      int writes = 0;
+      for(int i = 0; i < keys.size(); i++) {
+        final K key = keys.get(i);
+        final V value = values.get(i);
+        if((entry = (ExpungingEntryImpl<V>) this.read.get(key)) != null) {
+          // If the entry was expunged, unexpunge and add the entry
+          // back to the dirty map.
+          if(entry.tryUnexpungeAndSet(value, this.count)) {
+            this.dirty.put(key, entry);
+            writes++;
+          } else if(onlyIfAbsent) {
+            entry.trySetIfAbsent(value, this.count);
+          } else {
+            entry.set(value, this.count);
+          }
+        } else if(this.dirty != null && (entry = (ExpungingEntryImpl<V>) this.dirty.get(key)) != null) {
+          if(onlyIfAbsent) {
+            entry.trySetIfAbsent(value, this.count);
+          } else {
+            entry.set(value, this.count);
+          }
+        } else {
+          this.insertLocked(key, value);
+          writes++;
+        }
+      }
+      this.writeAllLocked(writes, size);
+    } finally {
+      this.unlock(lockedAt);
+    }
+  }
+
+  /**
+   * Adds a new key to the {@code dirty} map, without counting it as a write.
+   */
+  private void insertLocked(final @Nullable K key, final @NonNull V value) {
+    if(!this.amended) {
+      // Adds the first new key to the dirty map and marks it as
+      // amended.
+      this.dirtyLocked();
+      this.amended = true;
+    } else {
+      // Continue moving the read map entries over to the dirty
+      // map, a small stride at a time.
+      this.transferLocked(this.transferStride);
+    }
+    this.putDirtyLocked(key, value);
+  }
+
+  /**
+   * Returns a stream over the backing entries of the promoted {@code read}
+   * map, which is parallel if the map has at least the given amount of
+   * entries, so the bulk operations do not have to wrap each mapping.
+   */
+  private @NonNull Stream<Map.Entry<K, ExpungingEntry<V>>> bulk(final long parallelismThreshold) {
+    this.promote();
+    final Map<K, ExpungingEntry<V>> read = this.read;
+    return StreamSupport.stream(read.entrySet().spliterator(), read.size() >= parallelismThreshold);
+  }
+
+  /**
+   * Publishes an insert that missed the {@code read} map, and waits for it
+   * to be applied by whichever thread holds the lock, which applies every
+   * insert published by then in the same pass, so the concurrent writers do
+   * not each hand the lock over to the next one.
+   */
+  private @Nullable V combine(final @NonNull Insert<K, V> insert) {
+    Insert<K, V> head;
+    do {
+      insert.next = head = this.inserts;
+    } while(!SyncMapImpl.INSERTS.compareAndSet(this, head, insert));
+    for(int spins = 0; !insert.done; spins++) {
+      if(spins < SyncMapImpl.COMBINE_SPINS) {
+        if(!this.lock.tryLock()) {
+          // The thread holding the lock is likely to apply this insert
+          // along with its own.
+          Thread.yield();
+          continue;
+        }
+      } else {
+        // The lock is held for longer than a few inserts, so the thread
+        // parks instead of spinning any further.
+        this.lock.lock();
+      }
+      final long lockedAt = this.stats != null ? System.nanoTime() : 0L;
+      try {
+        this.combineLocked();
+      } finally {
+        this.unlock(lockedAt);
+      }
+    }
+    return insert.get();
+  }
+
+  /**
+   * Applies the inserts published so far, in a single pass.
+   */
+  @SuppressWarnings("unchecked")
+  private void combineLocked() {
+    Insert<K, V> insert = SyncMapImpl.INSERTS.getAndSet(this, null);
+    while(insert != null) {
+      final Insert<K, V> next = insert.next;
+      try {
+        insert.result = insert.onlyIfAbsent ? this.putIfAbsentLocked(insert.key, insert.value) : this.putLocked(insert.key, insert.value);
+      } catch(final RuntimeException | Error failure) {
+        // The failure is thrown to the thread that published the insert,
+        // rather than abandoning the rest of the inserts.
+        insert.failure = failure;
+      }
+      insert.done = true;
+      insert = next;
+    }
+  }
+
   private void promote() {
     if(this.amended) {
-      synchronized(this.lock) {
+      final long lockedAt = this.lock();
+      try {
         if(this.amended) {
           this.promoteLocked();
         }
+      } finally {
+        this.unlock(lockedAt);
       }
     }
   }
 
   private void missLocked() {
     this.misses++;
-    if(this.misses < this.dirty.size()) return;
-    this.promoteLocked();
+    if(this.stats != null) this.stats.misses.increment();
+    this.transferLocked(this.transferStride);
+    if(!this.promotionPolicy.shouldPromote(this.misses, this.writes, this.dirtySizeLocked(), this.amendedAt)) return;
+    this.requestPromotionLocked();
+  }
+
+  private void writeLocked() {
+    this.writes++;
+    if(!this.promotionPolicy.shouldPromote(this.misses, this.writes, this.dirtySizeLocked(), this.amendedAt)) return;
+    this.requestPromotionLocked();
+  }
+
+  /**
+   * Counts the writes of a bulk operation once it is done, rather than
+   * promoting in the middle of it. If it wrote at least as many keys as the
+   * {@code read} map held, as when loading the map, the {@code dirty} map is
+   * promoted right away, so the keys can be read without the lock.
+   */
+  private void writeAllLocked(final int writes, final int size) {
+    if(writes == 0) return;
+    this.writes += writes;
+    if(writes >= size) {
+      this.promoteLocked();
+    } else if(this.promotionPolicy.shouldPromote(this.misses, this.writes, this.dirtySizeLocked(), this.amendedAt)) {
+      this.requestPromotionLocked();
+    }
+  }
+
+  private void requestPromotionLocked() {
+    if(this.promotionExecutor == null) {
+      this.promoteLocked();
+      return;
+    }
+    if(this.promotionScheduled) return;
+    this.promotionScheduled = true;
+    try {
+      this.promotionExecutor.execute(this::promoteAsync);
+    } catch(final RejectedExecutionException exception) {
+      this.promotionScheduled = false;
+      this.promoteLocked();
+    }
+  }
+
+  private void promoteAsync() {
+    final long start = System.nanoTime();
+    for(; ; ) {
+      final long lockedAt = this.lock();
+      try {
+        if(!this.amended) {
+          // Promoted or cleared by a foreground operation in the meantime.
+          this.promotionScheduled = false;
+          return;
+        }
+        if(this.transfer == null) {
+          this.promotionScheduled = false;
+          this.promoteLocked(start);
+          return;
+        }
+        // The lock is released after each stride, so the foreground
+        // operations are not held up for the whole transfer.
+        this.transferLocked(SyncMapImpl.ASYNC_TRANSFER_STRIDE);
+      } finally {
+        this.unlock(lockedAt);
+      }
+    }
   }
 
   private void promoteLocked() {
+    this.promoteLocked(this.promotionListener != null ? System.nanoTime() : 0L);
+  }
+
+  private void promoteLocked(final long start) {
+    // The dirty map must hold every live read entry before it can
+    // replace the read map.
+    this.transferLocked(Integer.MAX_VALUE);
     this.read = this.dirty;
+    this.filter = null;
+    if(this.stats != null) this.stats.promotions.increment();
     this.amended = false;
     this.dirty = null;
     this.misses = 0;
+    this.writes = 0;
+    if(this.promotionListener != null) {
+      this.promotionListener.promoted(this.read.size(), System.nanoTime() - start);
+    }
   }
 
   private void dirtyLocked() {
     if(this.dirty != null) return;
     this.dirty = this.function.apply(this.read.size());
-    for(final Map.Entry<K, ExpungingEntry<V>> entry : this.read.entrySet()) {
-      if(!entry.getValue().tryExpunge()) {
+    if(this.filtered) this.filter = new KeyFilter(0);
+    this.amendedAt = System.nanoTime();
+    if(this.stats != null) this.stats.dirtyRebuilds.increment();
+    // The read map is never mutated, so its entries can be moved over
+    // incrementally, instead of copying the whole map at once.
+    this.remaining = this.read.size();
+    this.transfer = this.read.entrySet().iterator();
+    this.transferLocked(this.transferStride);
+  }
+
+  /**
+   * Adds a new entry to the {@code dirty} map for a key that is not in the
+   * {@code read} map, tracking the key in the {@code filter}.
+   */
+  private void putDirtyLocked(final @Nullable K key, final @NonNull V value) {
+    KeyFilter filter = this.filter;
+    if(filter != null) {
+      if(filter.full()) {
+        // Rebuilds a larger filter from the dirty keys, rather than letting
+        // the false positives pile up.
+        filter = new KeyFilter(this.dirty.size() * 2);
+        for(final K dirtyKey : this.dirty.keySet()) {
+          filter.add(SyncMapImpl.hash(dirtyKey));
+        }
+        this.filter = filter;
+      }
+      filter.add(SyncMapImpl.hash(key));
+    }
+    this.dirty.put(key, new ExpungingEntryImpl<>(value));
+    this.count.increment();
+  }
+
+  private void transferLocked(final int stride) {
+    final Iterator<Map.Entry<K, ExpungingEntry<V>>> transfer = this.transfer;
+    if(transfer == null) return;
+    Map.Entry<K, ExpungingEntry<V>> entry;
+    for(int i = 0; i < stride && transfer.hasNext(); i++) {
+      this.remaining--;
+      if(!(entry = transfer.next()).getValue().tryExpunge()) {
         this.dirty.put(entry.getKey(), entry.getValue());
+      } else if(this.stats != null) {
+        this.stats.expunged.increment();
       }
     }
+    if(!transfer.hasNext()) this.transfer = null;
   }
 
+  /**
+   * Returns the size the {@code dirty} map will have once the transfer is
+   * done, which counts the {@code read} entries that have yet to be moved
+   * over, so a promotion is not decided on a partially filled map.
+   */
+  private int dirtySizeLocked() {
+    return this.dirty.size() + this.remaining;
+  }
+
+  private static int hash(final @Nullable Object key) {
+    return key == null ? 0 : key.hashCode();
+  }
+
+  private long lock() {
+    this.lock.lock();
+    return this.stats != null ? System.nanoTime() : 0L;
+  }
+
+  private void unlock(final long lockedAt) {
+    if(this.stats != null) this.stats.locked(System.nanoTime() - lockedAt);
+    this.lock.unlock();
+  }
+
+  /**
+   * The entry of the backing maps, which leaves counting its values to the
+   * map rather than holding a reference to the count of the map, so that the
+   * entry does not need a second field.
+   *
+   * <p>The methods that can add or remove the value take the count to update,
+   * while the methods of {@link ExpungingEntry} leave it unchanged.</p>
+   */
   @SuppressWarnings({"rawtypes", "unchecked"})
   /* package */ static final class ExpungingEntryImpl<V> implements ExpungingEntry<V> {
     private static final AtomicReferenceFieldUpdater<ExpungingEntryImpl, Object> UPDATER = AtomicReferenceFieldUpdater
@@ -448,27 +1196,39 @@ import static java.util.Objects.requireNonNull;
       this.value = value;
     }
 
+    private static void increment(final @Nullable LongAdder count) {
+      if(count != null) count.increment();
+    }
+
+    private static void decrement(final @Nullable LongAdder count) {
+      if(count != null) count.decrement();
+    }
+
     @Override
     public boolean exists() {
-      return this.value != null && this.value != ExpungingEntryImpl.EXPUNGED;
+      final Object value = this.value;
+      return value != null && value != ExpungingEntryImpl.EXPUNGED;
     }
 
     @Override
     public @Nullable V get() {
-      return this.value == ExpungingEntryImpl.EXPUNGED ? null : (V) this.value;
+      // The value is read once, so a concurrent expunge can never leak the
+      // sentinel between the check and the read.
+      final Object value = this.value;
+      return value == ExpungingEntryImpl.EXPUNGED ? null : (V) value;
     }
 
     @Override
     public @NonNull V getOr(final @NonNull V other) {
       final Object value = this.value;
-      return value != null && value != ExpungingEntryImpl.EXPUNGED ? (V) this.value : other;
+      return value != null && value != ExpungingEntryImpl.EXPUNGED ? (V) value : other;
     }
 
     @Override
     public @NonNull InsertionResult<V> setIfAbsent(final @NonNull V value) {
       for(; ; ) {
         final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED) return new InsertionResultImpl<>(InsertionResultImpl.EXPUNGED, null, null);
+        if(previous == ExpungingEntryImpl.EXPUNGED) return (InsertionResult<V>) InsertionResultImpl.EXPUNGED_RESULT;
         if(previous != null) return new InsertionResultImpl<>(InsertionResultImpl.UNCHANGED, (V) previous, (V) previous);
         if(ExpungingEntryImpl.UPDATER.compareAndSet(this, null, value)) {
           return new InsertionResultImpl<>(InsertionResultImpl.UPDATED, null, value);
@@ -481,7 +1241,7 @@ import static java.util.Objects.requireNonNull;
       V next = null;
       for(; ; ) {
         final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED) return new InsertionResultImpl<>(InsertionResultImpl.EXPUNGED, null, null);
+        if(previous == ExpungingEntryImpl.EXPUNGED) return (InsertionResult<V>) InsertionResultImpl.EXPUNGED_RESULT;
         if(previous != null) return new InsertionResultImpl<>(InsertionResultImpl.UNCHANGED, (V) previous, (V) previous);
         if(ExpungingEntryImpl.UPDATER.compareAndSet(this, null, next != null ? next : (next = function.apply(key)))) {
           return new InsertionResultImpl<>(InsertionResultImpl.UPDATED, null, next);
@@ -494,7 +1254,7 @@ import static java.util.Objects.requireNonNull;
       V next = null;
       for(; ; ) {
         final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED) return new InsertionResultImpl<>(InsertionResultImpl.EXPUNGED, null, null);
+        if(previous == ExpungingEntryImpl.EXPUNGED) return (InsertionResult<V>) InsertionResultImpl.EXPUNGED_RESULT;
         if(previous == null) return new InsertionResultImpl<>(InsertionResultImpl.UNCHANGED, null, null);
         if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, next != null ? next : (next = remappingFunction.apply(key, (V) previous)))) {
           return new InsertionResultImpl<>(InsertionResultImpl.UPDATED, (V) previous, next);
@@ -507,7 +1267,7 @@ import static java.util.Objects.requireNonNull;
       V next = null;
       for(; ; ) {
         final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED) return new InsertionResultImpl<>(InsertionResultImpl.EXPUNGED, null, null);
+        if(previous == ExpungingEntryImpl.EXPUNGED) return (InsertionResult<V>) InsertionResultImpl.EXPUNGED_RESULT;
         if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, next != null ? next : (next = remappingFunction.apply(key, (V) previous)))) {
           return new InsertionResultImpl<>(InsertionResultImpl.UPDATED, (V) previous, next);
         }
@@ -516,34 +1276,22 @@ import static java.util.Objects.requireNonNull;
 
     @Override
     public void set(final @NonNull V value) {
-      ExpungingEntryImpl.UPDATER.set(this, value);
+      this.set(value, null);
     }
 
     @Override
     public boolean replace(final @NonNull Object compare, final @Nullable V value) {
-      for(; ; ) {
-        final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED || !Objects.equals(previous, compare)) return false;
-        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, value)) return true;
-      }
+      return this.replace(compare, value, null);
     }
 
     @Override
     public @Nullable V clear() {
-      for(; ; ) {
-        final Object previous = this.value;
-        if(previous == null || previous == ExpungingEntryImpl.EXPUNGED) return null;
-        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, null)) return (V) previous;
-      }
+      return this.clear(null);
     }
 
     @Override
     public boolean trySet(final @NonNull V value) {
-      for(; ; ) {
-        final Object previous = this.value;
-        if(previous == ExpungingEntryImpl.EXPUNGED) return false;
-        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, value)) return true;
-      }
+      return this.trySet(value, null);
     }
 
     @Override
@@ -557,34 +1305,259 @@ import static java.util.Objects.requireNonNull;
 
     @Override
     public boolean tryExpunge() {
-      while(this.value == null) {
+      Object value;
+      while((value = this.value) == null) {
         if(ExpungingEntryImpl.UPDATER.compareAndSet(this, null, ExpungingEntryImpl.EXPUNGED)) return true;
       }
-      return this.value == ExpungingEntryImpl.EXPUNGED;
+      return value == ExpungingEntryImpl.EXPUNGED;
     }
 
     @Override
     public boolean tryUnexpungeAndSet(final @NonNull V value) {
-      return ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value);
+      return this.tryUnexpungeAndSet(value, null);
     }
 
     @Override
     public <K> boolean tryUnexpungeAndCompute(final @Nullable K key, final @NonNull Function<? super K, ? extends V> function) {
+      return this.tryUnexpungeAndCompute(key, function, null);
+    }
+
+    @Override
+    public <K> boolean tryUnexpungeAndCompute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+      return this.tryUnexpungeAndCompute(key, remappingFunction, null);
+    }
+
+    // Internal
+
+    /**
+     * Sets the value, updating the specified count if there was no value.
+     *
+     * @param value the value
+     * @param count the count, or {@code null} to leave it unchanged
+     */
+    /* package */ void set(final @NonNull V value, final @Nullable LongAdder count) {
+      if(ExpungingEntryImpl.UPDATER.getAndSet(this, value) == null) ExpungingEntryImpl.increment(count);
+    }
+
+    /**
+     * Replaces the value if it matches {@code compare}, updating the
+     * specified count if the value is removed.
+     *
+     * @param compare the comparing value
+     * @param value the new value
+     * @param count the count, or {@code null} to leave it unchanged
+     * @return true if the value was replaced, otherwise false
+     */
+    /* package */ boolean replace(final @NonNull Object compare, final @Nullable V value, final @Nullable LongAdder count) {
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous == ExpungingEntryImpl.EXPUNGED || !Objects.equals(previous, compare)) return false;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, value)) {
+          if(value == null) ExpungingEntryImpl.decrement(count);
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Clears the value, updating the specified count if there was one.
+     *
+     * @param count the count, or {@code null} to leave it unchanged
+     * @return the value
+     */
+    /* package */ @Nullable V clear(final @Nullable LongAdder count) {
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous == null || previous == ExpungingEntryImpl.EXPUNGED) return null;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, null)) {
+          ExpungingEntryImpl.decrement(count);
+          return (V) previous;
+        }
+      }
+    }
+
+    /**
+     * Sets the value if it is not expunged, updating the specified count if
+     * there was no value.
+     *
+     * @param value the value
+     * @param count the count, or {@code null} to leave it unchanged
+     * @return true if the value was set, otherwise false
+     */
+    /* package */ boolean trySet(final @NonNull V value, final @Nullable LongAdder count) {
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous == ExpungingEntryImpl.EXPUNGED) return false;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, value)) {
+          if(previous == null) ExpungingEntryImpl.increment(count);
+          return true;
+        }
+      }
+    }
+
+    /**
+     * Unexpunges the entry and sets the value, updating the specified count
+     * if it was expunged.
+     *
+     * @param value the value
+     * @param count the count, or {@code null} to leave it unchanged
+     * @return true if the value was unexpunged, otherwise false
+     */
+    /* package */ boolean tryUnexpungeAndSet(final @NonNull V value, final @Nullable LongAdder count) {
+      if(ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value)) {
+        ExpungingEntryImpl.increment(count);
+        return true;
+      }
+      return false;
+    }
+
+    /**
+     * Unexpunges the entry and computes the value, updating the specified
+     * count if a value was computed.
+     *
+     * @param key the key
+     * @param function the function
+     * @param count the count, or {@code null} to leave it unchanged
+     * @param <K> the key type
+     * @return true if the value was unexpunged, otherwise false
+     */
+    /* package */ <K> boolean tryUnexpungeAndCompute(final @Nullable K key, final @NonNull Function<? super K, ? extends V> function, final @Nullable LongAdder count) {
       if(this.value == ExpungingEntryImpl.EXPUNGED) {
         final Object value = function.apply(key);
-        return ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value);
+        // A missing value leaves the entry expunged, so it is never left
+        // behind in the read map without being in the dirty map.
+        if(value == null) return true;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value)) {
+          ExpungingEntryImpl.increment(count);
+          return true;
+        }
       }
       return false;
     }
 
-    @Override
-    public <K> boolean tryUnexpungeAndCompute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    /**
+     * Unexpunges the entry and computes the value, updating the specified
+     * count if a value was computed.
+     *
+     * @param key the key
+     * @param remappingFunction the remapping function
+     * @param count the count, or {@code null} to leave it unchanged
+     * @param <K> the key type
+     * @return true if the value was unexpunged, otherwise false
+     */
+    /* package */ <K> boolean tryUnexpungeAndCompute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction, final @Nullable LongAdder count) {
       if(this.value == ExpungingEntryImpl.EXPUNGED) {
         final Object value = remappingFunction.apply(key, null);
-        return ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value);
+        // A missing value leaves the entry expunged, so it is never left
+        // behind in the read map without being in the dirty map.
+        if(value == null) return true;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, ExpungingEntryImpl.EXPUNGED, value)) {
+          ExpungingEntryImpl.increment(count);
+          return true;
+        }
       }
       return false;
     }
+
+    /**
+     * Expunges the entry whatever its value, updating the specified count
+     * if there was one, so that any operation still holding the entry has
+     * to look its key up again.
+     *
+     * @param count the count
+     */
+    /* package */ void expunge(final @NonNull LongAdder count) {
+      final Object previous = ExpungingEntryImpl.UPDATER.getAndSet(this, ExpungingEntryImpl.EXPUNGED);
+      if(previous != null && previous != ExpungingEntryImpl.EXPUNGED) count.decrement();
+    }
+
+    /**
+     * Sets the specified value if a value doesn't already exist,
+     * without allocating a result.
+     *
+     * @param value the value
+     * @param count the count
+     * @return the previous value, or {@link #EXPUNGED} if the entry is expunged
+     */
+    /* package */ @Nullable Object trySetIfAbsent(final @NonNull V value, final @NonNull LongAdder count) {
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous != null) return previous;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, null, value)) {
+          count.increment();
+          return null;
+        }
+      }
+    }
+
+    /**
+     * Computes the specified value if a value doesn't already exist,
+     * without allocating a result.
+     *
+     * @param key the key
+     * @param function the function
+     * @param count the count
+     * @param <K> the key type
+     * @return the current value, or {@link #EXPUNGED} if the entry is expunged
+     */
+    /* package */ <K> @Nullable Object tryComputeIfAbsent(final @Nullable K key, final @NonNull Function<? super K, ? extends V> function, final @NonNull LongAdder count) {
+      V next = null;
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous != null) return previous;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, null, next != null ? next : (next = function.apply(key)))) {
+          if(next != null) count.increment();
+          return next;
+        }
+      }
+    }
+
+    /**
+     * Computes the specified value if a value already exists, without
+     * allocating a result.
+     *
+     * @param key the key
+     * @param remappingFunction the function
+     * @param count the count
+     * @param <K> the key type
+     * @return the current value, or {@link #EXPUNGED} if the entry is expunged
+     */
+    /* package */ <K> @Nullable Object tryComputeIfPresent(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction, final @NonNull LongAdder count) {
+      V next = null;
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous == null || previous == ExpungingEntryImpl.EXPUNGED) return previous;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, next != null ? next : (next = remappingFunction.apply(key, (V) previous)))) {
+          if(next == null) count.decrement();
+          return next;
+        }
+      }
+    }
+
+    /**
+     * Computes the specified value, without allocating a result.
+     *
+     * @param key the key
+     * @param remappingFunction the function
+     * @param count the count
+     * @param <K> the key type
+     * @return the current value, or {@link #EXPUNGED} if the entry is expunged
+     */
+    /* package */ <K> @Nullable Object tryCompute(final @Nullable K key, final @NonNull BiFunction<? super K, ? super V, ? extends V> remappingFunction, final @NonNull LongAdder count) {
+      V next = null;
+      for(; ; ) {
+        final Object previous = this.value;
+        if(previous == ExpungingEntryImpl.EXPUNGED) return previous;
+        if(ExpungingEntryImpl.UPDATER.compareAndSet(this, previous, next != null ? next : (next = remappingFunction.apply(key, (V) previous)))) {
+          if(previous == null && next != null) {
+            count.increment();
+          } else if(previous != null && next == null) {
+            count.decrement();
+          }
+          return next;
+        }
+      }
+    }
   }
 
   /* package */ static final class InsertionResultImpl<V> implements InsertionResult<V> {
@@ -592,6 +1565,12 @@ import static java.util.Objects.requireNonNull;
     private static final byte UPDATED = 0x01;
     private static final byte EXPUNGED = 0x02;
 
+    /**
+     * The result of any operation on an expunged entry, which carries no
+     * values and so can be shared.
+     */
+    private static final InsertionResult<?> EXPUNGED_RESULT = new InsertionResultImpl<>(InsertionResultImpl.EXPUNGED, null, null);
+
     private final byte operation;
     private final V previous;
     private final V current;
@@ -618,6 +1597,123 @@ import static java.util.Objects.requireNonNull;
     }
   }
 
+  /* package */ static final class Insert<K, V> {
+    /* package */ final K key;
+    /* package */ final V value;
+    /* package */ final boolean onlyIfAbsent;
+    /* package */ @Nullable Insert<K, V> next;
+    /* package */ @Nullable V result;
+    /* package */ @Nullable Throwable failure;
+    /* package */ volatile boolean done;
+
+    /* package */ Insert(final @Nullable K key, final @NonNull V value, final boolean onlyIfAbsent) {
+      this.key = key;
+      this.value = value;
+      this.onlyIfAbsent = onlyIfAbsent;
+    }
+
+    /* package */ @Nullable V get() {
+      final Throwable failure = this.failure;
+      if(failure instanceof RuntimeException) throw (RuntimeException) failure;
+      if(failure instanceof Error) throw (Error) failure;
+      return this.result;
+    }
+  }
+
+  /* package */ static final class Load<V> extends CompletableFuture<V> {
+    /* package */ final Thread thread = Thread.currentThread();
+
+    /* package */ @Nullable V await() {
+      try {
+        return this.join();
+      } catch(final CompletionException exception) {
+        final Throwable cause = exception.getCause();
+        if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if(cause instanceof Error) throw (Error) cause;
+        throw exception;
+      }
+    }
+  }
+
+  /* package */ static final class StatsCounter {
+    private final LongAdder locks = new LongAdder();
+    private final LongAdder lockTime = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder promotions = new LongAdder();
+    private final LongAdder dirtyRebuilds = new LongAdder();
+    private final LongAdder expunged = new LongAdder();
+
+    /* package */ void locked(final long time) {
+      this.locks.increment();
+      this.lockTime.add(time);
+    }
+
+    /* package */ @NonNull StatsImpl snapshot() {
+      return new StatsImpl(this.locks.sum(), this.lockTime.sum(), this.misses.sum(), this.promotions.sum(), this.dirtyRebuilds.sum(), this.expunged.sum());
+    }
+  }
+
+  /* package */ static final class StatsImpl implements Stats {
+    /* package */ static final StatsImpl EMPTY = new StatsImpl(0L, 0L, 0L, 0L, 0L, 0L);
+
+    private final long locks;
+    private final long lockTime;
+    private final long misses;
+    private final long promotions;
+    private final long dirtyRebuilds;
+    private final long expunged;
+
+    /* package */ StatsImpl(final long locks, final long lockTime, final long misses, final long promotions, final long dirtyRebuilds, final long expunged) {
+      this.locks = locks;
+      this.lockTime = lockTime;
+      this.misses = misses;
+      this.promotions = promotions;
+      this.dirtyRebuilds = dirtyRebuilds;
+      this.expunged = expunged;
+    }
+
+    @Override
+    public long locks() {
+      return this.locks;
+    }
+
+    @Override
+    public long lockTime() {
+      return this.lockTime;
+    }
+
+    @Override
+    public long misses() {
+      return this.misses;
+    }
+
+    @Override
+    public long promotions() {
+      return this.promotions;
+    }
+
+    @Override
+    public long dirtyRebuilds() {
+      return this.dirtyRebuilds;
+    }
+
+    @Override
+    public long expunged() {
+      return this.expunged;
+    }
+
+    /* package */ @NonNull StatsImpl plus(final @NonNull Stats other) {
+      return new StatsImpl(this.locks + other.locks(), this.lockTime + other.lockTime(), this.misses + other.misses(),
+        this.promotions + other.promotions(), this.dirtyRebuilds + other.dirtyRebuilds(), this.expunged + other.expunged());
+    }
+
+    @Override
+    public @NonNull String toString() {
+      return "Stats{locks=" + this.locks + ", lockTime=" + this.lockTime + ", misses=" + this.misses + ", promotions=" + this.promotions
+        + ", dirtyRebuilds=" + this.dirtyRebuilds + ", expunged=" + this.expunged + "}";
+    }
+  }
+
   /* package */ final class MapEntry implements Map.Entry<K, V> {
     private final K key;
     private V value;
@@ -702,49 +1798,223 @@ import static java.util.Objects.requireNonNull;
       SyncMapImpl.this.promote();
       return new EntryIterator(SyncMapImpl.this.read.entrySet().iterator());
     }
+
+    @Override
+    public @NonNull Spliterator<Map.Entry<K, V>> spliterator() {
+      SyncMapImpl.this.promote();
+      return new ViewSpliterator<>(SyncMapImpl.this.read.entrySet().spliterator(), (key, value) -> new MapEntry(key, value), Spliterator.NONNULL | Spliterator.DISTINCT);
+    }
+  }
+
+  /* package */ final class KeySetView extends AbstractSet<K> {
+    @Override
+    public int size() {
+      return SyncMapImpl.this.size();
+    }
+
+    @Override
+    public boolean contains(final @Nullable Object key) {
+      return SyncMapImpl.this.containsKey(key);
+    }
+
+    @Override
+    public boolean remove(final @Nullable Object key) {
+      return SyncMapImpl.this.remove(key) != null;
+    }
+
+    @Override
+    public void clear() {
+      SyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<K> iterator() {
+      SyncMapImpl.this.promote();
+      return new KeyIterator(SyncMapImpl.this.read.entrySet().iterator());
+    }
+
+    @Override
+    public @NonNull Spliterator<K> spliterator() {
+      SyncMapImpl.this.promote();
+      return new ViewSpliterator<>(SyncMapImpl.this.read.entrySet().spliterator(), (key, value) -> key, Spliterator.DISTINCT);
+    }
+  }
+
+  /* package */ final class ValuesView extends AbstractCollection<V> {
+    @Override
+    public int size() {
+      return SyncMapImpl.this.size();
+    }
+
+    @Override
+    public void clear() {
+      SyncMapImpl.this.clear();
+    }
+
+    @Override
+    public @NonNull Iterator<V> iterator() {
+      SyncMapImpl.this.promote();
+      return new ValueIterator(SyncMapImpl.this.read.entrySet().iterator());
+    }
+
+    @Override
+    public @NonNull Spliterator<V> spliterator() {
+      SyncMapImpl.this.promote();
+      return new ViewSpliterator<>(SyncMapImpl.this.read.entrySet().spliterator(), (key, value) -> value, Spliterator.NONNULL);
+    }
   }
 
-  /* package */ final class EntryIterator implements Iterator<Map.Entry<K, V>> {
+  /**
+   * Iterates over the backing entries that have a value, keeping the key
+   * and value of the next one rather than wrapping them, so that only the
+   * entry iterator has to allocate for each element.
+   */
+  /* package */ abstract class ViewIterator<T> implements Iterator<T> {
     private final Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator;
-    private Map.Entry<K, V> next;
-    private Map.Entry<K, V> current;
+    private K nextKey;
+    private V nextValue;
+    private K currentKey;
+    private boolean current;
 
-    /* package */ EntryIterator(final @NonNull Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator) {
+    /* package */ ViewIterator(final @NonNull Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator) {
       this.backingIterator = backingIterator;
       this.advance();
     }
 
     @Override
     public boolean hasNext() {
-      return this.next != null;
+      return this.nextValue != null;
     }
 
     @Override
-    public Map.@NonNull Entry<K, V> next() {
-      final Map.Entry<K, V> current;
-      if((current = this.next) == null) throw new NoSuchElementException();
-      this.current = current;
+    public T next() {
+      final K key = this.nextKey;
+      final V value;
+      if((value = this.nextValue) == null) throw new NoSuchElementException();
+      this.currentKey = key;
+      this.current = true;
       this.advance();
-      return current;
+      return this.element(key, value);
     }
 
     @Override
     public void remove() {
-      final Map.Entry<K, V> current;
-      if((current = this.current) == null) throw new IllegalStateException();
-      this.current = null;
-      SyncMapImpl.this.remove(current.getKey());
+      if(!this.current) throw new IllegalStateException();
+      this.current = false;
+      SyncMapImpl.this.remove(this.currentKey);
     }
 
+    /* package */ abstract T element(final @Nullable K key, final @NonNull V value);
+
     private void advance() {
-      this.next = null;
+      this.nextKey = null;
+      this.nextValue = null;
       while(this.backingIterator.hasNext()) {
         final Map.Entry<K, ExpungingEntry<V>> entry; final V value;
         if((value = (entry = this.backingIterator.next()).getValue().get()) != null) {
-          this.next = new MapEntry(entry.getKey(), value);
+          this.nextKey = entry.getKey();
+          this.nextValue = value;
           return;
         }
       }
     }
   }
+
+  /* package */ final class EntryIterator extends ViewIterator<Map.Entry<K, V>> {
+    /* package */ EntryIterator(final @NonNull Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator) {
+      super(backingIterator);
+    }
+
+    @Override
+    /* package */ Map.@NonNull Entry<K, V> element(final @Nullable K key, final @NonNull V value) {
+      return new MapEntry(key, value);
+    }
+  }
+
+  /* package */ final class KeyIterator extends ViewIterator<K> {
+    /* package */ KeyIterator(final @NonNull Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator) {
+      super(backingIterator);
+    }
+
+    @Override
+    /* package */ @Nullable K element(final @Nullable K key, final @NonNull V value) {
+      return key;
+    }
+  }
+
+  /* package */ final class ValueIterator extends ViewIterator<V> {
+    /* package */ ValueIterator(final @NonNull Iterator<Map.Entry<K, ExpungingEntry<V>>> backingIterator) {
+      super(backingIterator);
+    }
+
+    @Override
+    /* package */ @NonNull V element(final @Nullable K key, final @NonNull V value) {
+      return value;
+    }
+  }
+
+  /**
+   * Splits over the backing entries of a promoted {@code read} map, which
+   * is never mutated, by delegating to the backing spliterator and skipping
+   * the entries that have no value.
+   */
+  /* package */ final class ViewSpliterator<T> implements Spliterator<T>, Consumer<Map.Entry<K, ExpungingEntry<V>>> {
+    private final Spliterator<Map.Entry<K, ExpungingEntry<V>>> backingSpliterator;
+    private final BiFunction<K, V, T> function;
+    private final int characteristics;
+    private K nextKey;
+    private V nextValue;
+
+    /* package */ ViewSpliterator(final @NonNull Spliterator<Map.Entry<K, ExpungingEntry<V>>> backingSpliterator, final @NonNull BiFunction<K, V, T> function, final int characteristics) {
+      this.backingSpliterator = backingSpliterator;
+      this.function = function;
+      this.characteristics = characteristics | Spliterator.CONCURRENT;
+    }
+
+    @Override
+    public boolean tryAdvance(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      while(this.backingSpliterator.tryAdvance(this)) {
+        final V value;
+        if((value = this.nextValue) != null) {
+          action.accept(this.function.apply(this.nextKey, value));
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    public void forEachRemaining(final @NonNull Consumer<? super T> action) {
+      requireNonNull(action, "action");
+      this.backingSpliterator.forEachRemaining(entry -> {
+        final V value;
+        if((value = entry.getValue().get()) != null) {
+          action.accept(this.function.apply(entry.getKey(), value));
+        }
+      });
+    }
+
+    @Override
+    public @Nullable Spliterator<T> trySplit() {
+      final Spliterator<Map.Entry<K, ExpungingEntry<V>>> split = this.backingSpliterator.trySplit();
+      return split != null ? new ViewSpliterator<>(split, this.function, this.characteristics) : null;
+    }
+
+    @Override
+    public long estimateSize() {
+      return this.backingSpliterator.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+      return this.characteristics;
+    }
+
+    @Override
+    public void accept(final Map.@NonNull Entry<K, ExpungingEntry<V>> entry) {
+      this.nextKey = entry.getKey();
+      this.nextValue = entry.getValue().get();
+    }
+  }
 }
@@ -0,0 +1,140 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncSyncMapTest extends AbstractMapTest<String, String> {
+  @Override
+  protected @NonNull Map<String, String> createMap() {
+    return AsyncSyncMap.<String, String>hashmap().synchronous();
+  }
+
+  @Override
+  protected @NonNull Map<String, String> populate(final @NonNull Map<String, String> map, final int entries) {
+    for(int i = 0; i < entries; i++) {
+      map.put(this.key(i), this.value(i));
+    }
+    return map;
+  }
+
+  @Override
+  protected Map.@NonNull Entry<String, String> entry(final int index) {
+    return new AbstractMap.SimpleImmutableEntry<>(String.valueOf(index), String.valueOf(index));
+  }
+
+  @Override
+  protected String key(final int index) {
+    return String.valueOf(index);
+  }
+
+  @Override
+  protected String value(final int index) {
+    return String.valueOf(index);
+  }
+
+  // Get Or Load
+
+  @Test
+  public void testGetOrLoadShared() {
+    final AsyncSyncMap<String, String> map = AsyncSyncMap.hashmap();
+    final CompletableFuture<String> loading = new CompletableFuture<>();
+    final AtomicInteger loads = new AtomicInteger();
+    final CompletableFuture<String> first = map.getOrLoad(this.key(0), key -> {
+      loads.incrementAndGet();
+      return loading;
+    });
+    final CompletableFuture<String> second = map.getOrLoad(this.key(0), key -> {
+      loads.incrementAndGet();
+      return CompletableFuture.completedFuture(this.value(1));
+    });
+    assertSame(first, second, "Map should return the future in progress at index 0.");
+    assertEquals(1, loads.get(), "Map should load the key at index 0 once.");
+    assertFalse(first.isDone(), "Future should not complete before the load does.");
+    assertFalse(map.synchronous().entrySet().iterator().hasNext(), "Map should not iterate the futures in progress.");
+    loading.complete(this.value(0));
+    assertEquals(this.value(0), first.join(), "Future should complete with the loaded value at index 0.");
+    assertEquals(this.value(0), map.synchronous().get(this.key(0)), "Map should return the loaded value at index 0.");
+  }
+
+  @Test
+  public void testGetOrLoadFailureRemoved() {
+    final AsyncSyncMap<String, String> map = AsyncSyncMap.hashmap();
+    final CompletableFuture<String> loading = new CompletableFuture<>();
+    final CompletableFuture<String> future = map.getOrLoad(this.key(0), key -> loading);
+    assertSame(future, map.get(this.key(0)), "Map should return the future in progress at index 0.");
+    loading.completeExceptionally(new IllegalStateException());
+    assertTrue(future.isCompletedExceptionally(), "Future should complete exceptionally with the load.");
+    assertNull(map.get(this.key(0)), "Map should remove the failed future at index 0.");
+    final CompletableFuture<String> reloaded = map.getOrLoad(this.key(0), key -> CompletableFuture.completedFuture(this.value(0)));
+    assertNotSame(future, reloaded, "Map should load the key at index 0 again.");
+    assertEquals(this.value(0), reloaded.join(), "Future should complete with the reloaded value at index 0.");
+  }
+
+  @Test
+  public void testGetOrLoadThrows() {
+    final AsyncSyncMap<String, String> map = AsyncSyncMap.hashmap();
+    final CompletableFuture<String> future = map.getOrLoad(this.key(0), key -> {
+      throw new IllegalStateException();
+    });
+    assertTrue(future.isCompletedExceptionally(), "Future should complete exceptionally with the exception of the loader.");
+    assertNull(map.get(this.key(0)), "Map should remove the failed future at index 0.");
+  }
+
+  @Test
+  public void testComputeIfAbsentThrows() {
+    final AsyncSyncMap<String, String> map = AsyncSyncMap.hashmap();
+    assertThrows(IllegalStateException.class, () -> map.synchronous().computeIfAbsent(this.key(0), key -> {
+      throw new IllegalStateException();
+    }));
+    assertNull(map.get(this.key(0)), "Map should remove the failed future at index 0.");
+    assertEquals(this.value(0), map.synchronous().computeIfAbsent(this.key(0), key -> this.value(0)), "Map should compute the value at index 0 again.");
+  }
+
+  @Test
+  public void testPutNullValueRemoved() {
+    final AsyncSyncMap<String, String> map = AsyncSyncMap.hashmap();
+    final CompletableFuture<String> future = new CompletableFuture<>();
+    map.put(this.key(0), future);
+    assertEquals(1, map.synchronous().size(), "Map should be of size 1, with the future in progress.");
+    future.complete(null);
+    assertNull(map.get(this.key(0)), "Map should remove the future completed with null at index 0.");
+    assertTrue(map.synchronous().isEmpty(), "Map should be empty.");
+  }
+}
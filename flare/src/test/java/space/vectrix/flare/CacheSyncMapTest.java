@@ -0,0 +1,239 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import net.jodah.concurrentunit.Waiter;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+import space.vectrix.test.TestHelper;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CacheSyncMapTest extends AbstractMapTest<String, String> {
+  private final AtomicLong ticker = new AtomicLong();
+
+  @Override
+  protected @NonNull Map<String, String> createMap() {
+    return SyncMap.<String, String>builder()
+      .maximumSize(1_000_000)
+      .expireAfterAccess(1, TimeUnit.HOURS)
+      .ticker(this.ticker::get)
+      .build();
+  }
+
+  @Override
+  protected @NonNull Map<String, String> populate(final @NonNull Map<String, String> map, final int entries) {
+    for(int i = 0; i < entries; i++) {
+      map.put(this.key(i), this.value(i));
+    }
+    return map;
+  }
+
+  @Override
+  protected Map.@NonNull Entry<String, String> entry(final int index) {
+    return new AbstractMap.SimpleImmutableEntry<>(String.valueOf(index), String.valueOf(index));
+  }
+
+  @Override
+  protected String key(final int index) {
+    return String.valueOf(index);
+  }
+
+  @Override
+  protected String value(final int index) {
+    return String.valueOf(index);
+  }
+
+  // Cache
+
+  @Test
+  public void testInvalidCache() {
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.builder().maximumSize(-1));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.builder().expireAfterWrite(-1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.builder().expireAfterAccess(-1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testMaximumSize() {
+    final Map<String, String> map = SyncMap.<String, String>builder().maximumSize(100).build();
+    this.populate(map, 1000);
+    assertEquals(100, map.size(), "Map should be of size 100.");
+    assertEquals(this.value(999), map.get(this.key(999)), "Map should return the value at index 999, as it was inserted last.");
+  }
+
+  @Test
+  public void testMaximumSizeEvictsLeastRecentlyAccessed() {
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .maximumSize(4)
+      .ticker(this.ticker::get)
+      .build();
+    for(int i = 0; i < 4; i++) {
+      this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+      map.put(this.key(i), this.value(i));
+    }
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0.");
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    map.put(this.key(4), this.value(4));
+    assertEquals(4, map.size(), "Map should be of size 4.");
+    assertFalse(map.containsKey(this.key(1)), "Map should evict the least recently accessed key at index 1.");
+    assertTrue(map.containsKey(this.key(0)), "Map should not evict the recently accessed key at index 0.");
+    assertTrue(map.containsKey(this.key(4)), "Map should not evict the inserted key at index 4.");
+  }
+
+  @Test
+  public void testMaximumSizeAfterClear() {
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .maximumSize(4)
+      .ticker(this.ticker::get)
+      .build();
+    for(int i = 0; i < 8; i++) {
+      this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+      map.put(this.key(i), this.value(i));
+    }
+    map.clear();
+    for(int i = 8; i < 12; i++) {
+      this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+      map.put(this.key(i), this.value(i));
+    }
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertEquals(this.value(8), map.get(this.key(8)), "Map should return the value at index 8.");
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    map.put(this.key(12), this.value(12));
+    assertEquals(4, map.size(), "Map should be of size 4.");
+    assertFalse(map.containsKey(this.key(9)), "Map should evict the least recently accessed key at index 9, after the clear.");
+    assertTrue(map.containsKey(this.key(8)), "Map should not evict the recently accessed key at index 8.");
+  }
+
+  @Test
+  public void testSingleFlight() throws Throwable {
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .maximumSize(100)
+      .singleFlight()
+      .build();
+    final CountDownLatch loading = new CountDownLatch(2);
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    // Each load waits for the other to start, which only happens if the
+    // cache keeps loading the keys outside of the lock.
+    final int threadCount = 2;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int index = counter.getAndIncrement();
+        waiter.assertEquals(this.value(index), map.computeIfAbsent(this.key(index), key -> {
+          loading.countDown();
+          try {
+            waiter.assertTrue(loading.await(10, TimeUnit.SECONDS));
+          } catch (final InterruptedException exception) {
+            waiter.fail(exception);
+          }
+          return this.value(index);
+        }));
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(20_000, threadCount);
+    assertEquals(2, map.size(), "Map should be of size 2.");
+  }
+
+  @Test
+  public void testExpireAfterWrite() {
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .expireAfterWrite(10, TimeUnit.SECONDS)
+      .ticker(this.ticker::get)
+      .build();
+    this.populate(map, 10);
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0, before it expires.");
+    map.put(this.key(1), this.value(2));
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertNull(map.get(this.key(0)), "Map should not return the value at index 0, after it expires.");
+    assertEquals(this.value(2), map.get(this.key(1)), "Map should return the value written at index 1, before it expires.");
+    assertNull(map.putIfAbsent(this.key(2), this.value(3)), "Map should put the value at index 2, after it expires.");
+    assertEquals(this.value(3), map.get(this.key(2)), "Map should return the value put at index 2.");
+    assertEquals(2, map.entrySet().stream().count(), "Map should only iterate the unexpired entries.");
+  }
+
+  @Test
+  public void testExpireAfterAccess() {
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .expireAfterAccess(10, TimeUnit.SECONDS)
+      .ticker(this.ticker::get)
+      .build();
+    this.populate(map, 10);
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0, before it expires.");
+    this.ticker.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0, as it was accessed.");
+    assertNull(map.get(this.key(1)), "Map should not return the value at index 1, after it expires.");
+    assertEquals(1, map.entrySet().stream().count(), "Map should only iterate the unexpired entry at index 0.");
+    assertNull(map.computeIfPresent(this.key(2), (key, value) -> value), "Map should not compute the value at index 2, after it expires.");
+    assertEquals(this.value(3), map.computeIfAbsent(this.key(3), key -> this.value(3)), "Map should compute the value at index 3, after it expires.");
+  }
+
+  // Concurrent
+
+  @Test
+  public void testConcurrentMaximumSize() throws Throwable {
+    final Map<Integer, Boolean> map = SyncMap.<Integer, Boolean>builder().maximumSize(1_000).build();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+          map.get(offset + i / 2);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertTrue(map.size() <= 1_000 + threadCount, "Map should not grow past its maximum size, other than by concurrent insertions.");
+  }
+}
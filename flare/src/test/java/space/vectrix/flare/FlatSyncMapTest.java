@@ -0,0 +1,212 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import net.jodah.concurrentunit.Waiter;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+import space.vectrix.test.TestHelper;
+
+import java.util.AbstractMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FlatSyncMapTest extends AbstractMapTest<String, String> {
+  @Override
+  protected @NonNull Map<String, String> createMap() {
+    return SyncMap.flat(4);
+  }
+
+  @Override
+  protected @NonNull Map<String, String> populate(final @NonNull Map<String, String> map, final int entries) {
+    for(int i = 0; i < entries; i++) {
+      map.put(this.key(i), this.value(i));
+    }
+    return map;
+  }
+
+  @Override
+  protected Map.@NonNull Entry<String, String> entry(final int index) {
+    return new AbstractMap.SimpleImmutableEntry<>(String.valueOf(index), String.valueOf(index));
+  }
+
+  @Override
+  protected String key(final int index) {
+    return String.valueOf(index);
+  }
+
+  @Override
+  protected String value(final int index) {
+    return String.valueOf(index);
+  }
+
+  // Table
+
+  @Test
+  public void testInvalidCapacity() {
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.flat(-1));
+  }
+
+  @Test
+  public void testNullKey() {
+    final Map<String, String> map = this.populate(this.createMap(), 10);
+    assertNull(map.put(null, this.value(10)), "Map should return null when putting the null key.");
+    assertEquals(this.value(10), map.get(null), "Map should return the value of the null key.");
+    assertEquals(this.value(10), map.remove(null), "Map should return the value of the null key, when removing it.");
+    assertEquals(10, map.size(), "Map should be of size 10.");
+  }
+
+  @Test
+  public void testPutRemoveGrow() {
+    final Map<String, String> map = this.createMap();
+    for(int i = 0; i < 1000; i++) {
+      map.put(this.key(i), this.value(i));
+      // Leaves a removed key behind in every other slot, which a resize drops.
+      if(i % 2 == 0) map.remove(this.key(i));
+    }
+    assertEquals(500, map.size(), "Map should be of size 500.");
+    for(int i = 0; i < 1000; i++) {
+      assertEquals(i % 2 == 0 ? null : this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertEquals(this.value(2), map.computeIfAbsent(this.key(2), key -> this.value(2)), "Map should compute the removed key at index 2.");
+    assertEquals(501, map.size(), "Map should be of size 501.");
+  }
+
+  @Test
+  public void testComputeResize() {
+    final Map<String, String> map = this.createMap();
+    assertEquals(this.value(0), map.computeIfAbsent(this.key(0), key -> {
+      // Inserts enough keys to resize the table while the function runs.
+      for(int i = 1; i < 100; i++) {
+        map.put(this.key(i), this.value(i));
+      }
+      return this.value(0);
+    }), "Map should return the computed value at index 0.");
+    assertEquals(this.value(100), map.compute(this.key(100), (key, value) -> {
+      for(int i = 101; i < 200; i++) {
+        map.put(this.key(i), this.value(i));
+      }
+      return this.value(100);
+    }), "Map should return the computed value at index 100.");
+    assertEquals(this.value(1), map.compute(this.key(1), (key, value) -> {
+      for(int i = 200; i < 400; i++) {
+        map.put(this.key(i), this.value(i));
+      }
+      return this.value(1);
+    }), "Map should return the computed value at index 1.");
+    assertEquals(this.value(401), map.computeIfAbsent(this.key(400), key -> {
+      // Inserts the key being computed itself, which is then present.
+      map.put(key, this.value(401));
+      return this.value(400);
+    }), "Map should return the value put by the function at index 400.");
+    assertEquals(401, map.size(), "Map should be of size 401.");
+    assertEquals(401, new HashSet<>(map.keySet()).size(), "Map should hold each key once.");
+    for(int i = 0; i < 400; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertEquals(this.value(401), map.get(this.key(400)), "Map should keep the value put by the function at index 400.");
+  }
+
+  @Test
+  public void testEntriesIteratorRemove() {
+    final Map<String, String> map = this.populate(this.createMap(), 100);
+    final Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+    while(iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+    assertTrue(map.isEmpty(), "Map should be empty after removing every entry with the iterator.");
+  }
+
+  @Test
+  public void testIteratorAcrossResize() {
+    final Map<String, String> map = this.populate(this.createMap(), 12);
+    final Iterator<String> iterator = map.keySet().iterator();
+    // Moves every slot of the table the iterator was created with, so the
+    // iterator has to look their values up in the new table.
+    this.populate(map, 1000);
+    final Set<String> keys = new HashSet<>();
+    iterator.forEachRemaining(keys::add);
+    assertEquals(12, keys.size(), "Iterator should return the 12 keys of the table it was created with.");
+    for(int i = 0; i < 12; i++) {
+      assertTrue(keys.contains(this.key(i)), "Iterator should return the key at index " + i + ".");
+    }
+  }
+
+  @Test
+  public void testSpliterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    final Spliterator<String> spliterator = map.keySet().spliterator();
+    final Spliterator<String> split = spliterator.trySplit();
+    assertNotNull(split, "Spliterator should split the table.");
+    final Set<String> keys = new HashSet<>();
+    split.forEachRemaining(key -> assertTrue(keys.add(key), "Spliterator should not return the key " + key + " more than once."));
+    spliterator.forEachRemaining(key -> assertTrue(keys.add(key), "Spliterator should not return the key " + key + " more than once."));
+    assertEquals(1000, keys.size(), "Spliterator should return all 1000 keys.");
+    assertEquals(1000, map.entrySet().parallelStream().count(), "Stream should return all 1000 entries.");
+  }
+
+  // Concurrent
+
+  @Test
+  public void testConcurrentPutRemove() throws Throwable {
+    final Map<Integer, Boolean> map = SyncMap.flat();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+        }
+        for(int i = 0; i < 10_000; i += 2) {
+          map.remove(offset + i);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals(threadCount * 5_000, map.size(), "Map should be of size " + (threadCount * 5_000) + ".");
+    for(int i = 0; i < threadCount * 10_000; i++) {
+      assertEquals(i % 2 == 0 ? null : Boolean.TRUE, map.get(i), "Map should return the value of the key " + i + ".");
+    }
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * This file is part of flare, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) vectrix.space <https://vectrix.space/>
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package space.vectrix.flare;
+
+import net.jodah.concurrentunit.Waiter;
+import org.checkerframework.checker.nullness.qual.NonNull;
+import org.junit.jupiter.api.Test;
+import space.vectrix.test.TestHelper;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StripedSyncMapTest extends AbstractMapTest<String, String> {
+  @Override
+  protected @NonNull Map<String, String> createMap() {
+    return SyncMap.striped(HashMap::new, 16, 4);
+  }
+
+  @Override
+  protected @NonNull Map<String, String> populate(final @NonNull Map<String, String> map, final int entries) {
+    for(int i = 0; i < entries; i++) {
+      map.put(this.key(i), this.value(i));
+    }
+    return map;
+  }
+
+  @Override
+  protected Map.@NonNull Entry<String, String> entry(final int index) {
+    return new AbstractMap.SimpleImmutableEntry<>(String.valueOf(index), String.valueOf(index));
+  }
+
+  @Override
+  protected String key(final int index) {
+    return String.valueOf(index);
+  }
+
+  @Override
+  protected String value(final int index) {
+    return String.valueOf(index);
+  }
+
+  // Stripes
+
+  @Test
+  public void testInvalidStripes() {
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.striped(HashMap::new, 16, 0));
+  }
+
+  @Test
+  public void testSingleStripe() {
+    final Map<String, String> map = this.populate(SyncMap.striped(HashMap::new, 16, 1), 10);
+    assertEquals(10, map.size(), "Map should be of size 10.");
+    for(int i = 0; i < 10; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+  }
+
+  @Test
+  public void testEntriesAcrossStripes() {
+    final Map<String, String> map = this.populate(this.createMap(), 100);
+    final Set<String> keys = new HashSet<>();
+    for(final Map.Entry<String, String> entry : map.entrySet()) {
+      assertTrue(keys.add(entry.getKey()), "Map should not return the key " + entry.getKey() + " more than once.");
+    }
+    assertEquals(100, keys.size(), "Map should return all 100 keys from every stripe.");
+  }
+
+  @Test
+  public void testEntriesIteratorRemoveAcrossStripes() {
+    final Map<String, String> map = this.populate(this.createMap(), 100);
+    final Iterator<Map.Entry<String, String>> iterator = map.entrySet().iterator();
+    while(iterator.hasNext()) {
+      iterator.next();
+      iterator.remove();
+    }
+    assertTrue(map.isEmpty(), "Map should be empty after removing every entry with the iterator.");
+  }
+
+  @Test
+  public void testSpliteratorAcrossStripes() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    final Spliterator<String> spliterator = map.keySet().spliterator();
+    assertEquals(1000, spliterator.estimateSize(), "Spliterator should estimate the size of every stripe.");
+    final Spliterator<String> split = spliterator.trySplit();
+    assertNotNull(split, "Spliterator should split the stripes.");
+    final Set<String> keys = new HashSet<>();
+    split.forEachRemaining(key -> assertTrue(keys.add(key), "Spliterator should not return the key " + key + " more than once."));
+    spliterator.forEachRemaining(key -> assertTrue(keys.add(key), "Spliterator should not return the key " + key + " more than once."));
+    assertEquals(1000, keys.size(), "Spliterator should return all 1000 keys from every stripe.");
+    assertEquals(1000, map.entrySet().parallelStream().count(), "Stream should return all 1000 entries from every stripe.");
+  }
+
+  @Test
+  public void testBulkAcrossStripes() {
+    final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 1000);
+    final Set<String> keys = ConcurrentHashMap.newKeySet();
+    map.forEach(1, (key, value) -> assertTrue(keys.add(key), "Map should not visit the key " + key + " more than once."));
+    assertEquals(1000, keys.size(), "Map should visit all 1000 entries from every stripe.");
+    assertEquals(this.value(500), map.search(1, (key, value) -> key.equals(this.key(500)) ? value : null), "Map should find the value at index 500.");
+    assertEquals(Integer.valueOf(499_500), map.reduce(1, (key, value) -> Integer.parseInt(value), Integer::sum), "Map should sum the 1000 values.");
+    assertEquals(499_500, map.reduceValuesToLong(1, Long::parseLong, 0L, Long::sum), "Map should sum the 1000 values.");
+  }
+
+  @Test
+  public void testStatsAcrossStripes() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().stripes(4).recordStats().build();
+    assertEquals(100, new HashSet<>(this.populate(map, 100).keySet()).size(), "Map should return all 100 keys from every stripe.");
+    final SyncMap.Stats stats = map.stats();
+    assertEquals(4, stats.dirtyRebuilds(), "Map should record a dirty map rebuild for every stripe.");
+    assertEquals(4, stats.promotions(), "Map should record a promotion for every stripe.");
+  }
+
+  @Test
+  public void testBulkWritesAcrossStripes() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().stripes(4).recordStats().build();
+    map.putAll(this.populate(new HashMap<>(), 1000));
+    assertEquals(4, map.stats().locks(), "Map should lock every stripe once, when putting all the entries.");
+    final Map<String, String> absent = new HashMap<>();
+    for(int i = 0; i < 2000; i++) {
+      absent.put(this.key(i), this.value(i + 1));
+    }
+    map.putAllIfAbsent(absent);
+    assertEquals(8, map.stats().locks(), "Map should lock every stripe once, when putting all the absent entries.");
+    final List<String> keys = new ArrayList<>();
+    for(int i = 1000; i < 3000; i++) {
+      keys.add(this.key(i));
+    }
+    map.computeAll(keys, (key, value) -> value != null ? null : key);
+    assertEquals(12, map.stats().locks(), "Map should lock every stripe once, when computing all the keys.");
+    assertEquals(2000, map.size(), "Map should be of size 2000.");
+    for(int i = 0; i < 3000; i++) {
+      assertEquals(i < 1000 ? this.value(i) : i < 2000 ? null : this.key(i), map.get(this.key(i)), "Map should return the expected value for the key at index " + i + ".");
+    }
+  }
+
+  // Concurrent
+
+  @Test
+  public void testConcurrentPutRemove() throws Throwable {
+    final Map<Integer, Boolean> map = SyncMap.striped(HashMap::new, 16, 8);
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+        }
+        for(int i = 0; i < 10_000; i += 2) {
+          map.remove(offset + i);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals(threadCount * 5_000, map.size(), "Map should be of size " + (threadCount * 5_000) + ".");
+  }
+}
@@ -31,14 +31,30 @@ import org.junit.jupiter.api.Test;
 import space.vectrix.test.TestHelper;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Random;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -138,6 +154,90 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
     assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0 when no mutation of the key at index 0 should have occurred.");
   }
 
+  // Single Flight
+
+  @Test
+  public void testSingleFlight() throws Throwable {
+    final Map<String, String> map = SyncMap.<String, String>builder().singleFlight().build();
+    final AtomicInteger loads = new AtomicInteger();
+    final CountDownLatch loading = new CountDownLatch(1);
+    final Waiter waiter = new Waiter();
+
+    final int threadCount = 8;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        waiter.assertEquals(this.value(0), map.computeIfAbsent(this.key(0), key -> {
+          loads.incrementAndGet();
+          try {
+            loading.await(100, TimeUnit.MILLISECONDS);
+          } catch (final InterruptedException exception) {
+            Thread.currentThread().interrupt();
+          }
+          return this.value(0);
+        }));
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(10_000, threadCount);
+    assertEquals(1, loads.get(), "Map should load the key at index 0 once.");
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the loaded value at index 0.");
+  }
+
+  @Test
+  public void testSingleFlightDifferentKeys() throws Throwable {
+    final Map<String, String> map = SyncMap.<String, String>builder().singleFlight().build();
+    final CountDownLatch loading = new CountDownLatch(2);
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    // Each load waits for the other to start, which only happens if they
+    // are not computed while holding the lock.
+    final int threadCount = 2;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int index = counter.getAndIncrement();
+        waiter.assertEquals(this.value(index), map.computeIfAbsent(this.key(index), key -> {
+          loading.countDown();
+          try {
+            waiter.assertTrue(loading.await(10, TimeUnit.SECONDS));
+          } catch (final InterruptedException exception) {
+            waiter.fail(exception);
+          }
+          return this.value(index);
+        }));
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(20_000, threadCount);
+    assertEquals(2, map.size(), "Map should be of size 2.");
+  }
+
+  @Test
+  public void testSingleFlightException() {
+    final Map<String, String> map = SyncMap.<String, String>builder().singleFlight().build();
+    assertThrows(IllegalArgumentException.class, () -> map.computeIfAbsent(this.key(0), key -> {
+      throw new IllegalArgumentException();
+    }));
+    assertNull(map.computeIfAbsent(this.key(0), key -> null), "Map should not put a null value.");
+    assertFalse(map.containsKey(this.key(0)), "Map should not contain the key at index 0.");
+    assertEquals(this.value(0), map.computeIfAbsent(this.key(0), key -> this.value(0)), "Map should load the key at index 0 again.");
+  }
+
+  @Test
+  public void testSingleFlightRecursive() {
+    final Map<String, String> map = SyncMap.<String, String>builder().singleFlight().build();
+    assertThrows(IllegalStateException.class, () -> map.computeIfAbsent(this.key(0), key -> map.computeIfAbsent(key, ignored -> this.value(0))));
+    assertEquals(this.value(1), map.computeIfAbsent(this.key(0), key -> this.value(1)), "Map should load the key at index 0 again.");
+  }
+
   // Compute If Present
 
   @Test
@@ -251,6 +351,50 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
     }
   }
 
+  @Test
+  public void testPutAllPromotes() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().recordStats().build();
+    map.putAll(this.populate(new HashMap<>(), 5));
+    assertEquals(1, map.stats().promotions(), "Map should promote the dirty map, when putting more entries than it held.");
+    for(int i = 0; i < 5; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertEquals(0, map.stats().misses(), "Map should not record a miss, when reading the promoted entries.");
+  }
+
+  @Test
+  public void testPutAllIfAbsent() {
+    final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 3);
+    final Map<String, String> other = new HashMap<>();
+    for(int i = 0; i < 5; i++) {
+      other.put(this.key(i), this.value(i + 10));
+    }
+    map.putAllIfAbsent(other);
+    assertEquals(5, map.size(), "Map should be of size 5.");
+    for(int i = 0; i < 5; i++) {
+      final String expected = i < 3 ? this.value(i) : this.value(i + 10);
+      assertEquals(expected, map.get(this.key(i)), "Map should return " + expected + " for the key at index " + i + ".");
+    }
+  }
+
+  // Compute All
+
+  @Test
+  public void testComputeAll() {
+    final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 3);
+    map.computeAll(Lists.newArrayList(this.key(0), this.key(1), this.key(3)), (key, value) -> {
+      if(key.equals(this.key(1))) {
+        return null;
+      }
+      return value == null ? this.value(30) : value + "!";
+    });
+    assertEquals(3, map.size(), "Map should be of size 3.");
+    assertEquals(this.value(0) + "!", map.get(this.key(0)), "Map should return the computed value for the present key at index 0.");
+    assertNull(map.get(this.key(1)), "Map should remove the key at index 1, when computing null.");
+    assertEquals(this.value(2), map.get(this.key(2)), "Map should keep the value for the key at index 2.");
+    assertEquals(this.value(30), map.get(this.key(3)), "Map should return the computed value for the absent key at index 3.");
+  }
+
   // Replace All
 
   @Test
@@ -304,8 +448,49 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
     assertThrows(UnsupportedOperationException.class, () -> keys.addAll(Lists.newArrayList(this.key(0), this.key(1))));
   }
 
+  @Test
+  public void testKeysIterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 10);
+    assertEquals(this.value(0), map.remove(this.key(0)), "Map should return the value at index 0, when removing the entry.");
+    assertNull(map.put(this.key(10), this.value(10)), "Map should return null when putting a new entry at index 10.");
+    final Set<String> keys = new HashSet<>();
+    final Iterator<String> iterator = map.keySet().iterator();
+    while(iterator.hasNext()) {
+      final String key = iterator.next();
+      assertTrue(keys.add(key), "Iterator should not return the key " + key + " more than once.");
+      if(key.equals(this.key(1))) iterator.remove();
+    }
+    assertThrows(NoSuchElementException.class, iterator::next);
+    assertEquals(10, keys.size(), "Iterator should return the 10 keys with a value.");
+    assertFalse(keys.contains(this.key(0)), "Iterator should not return the removed key.");
+    assertFalse(map.containsKey(this.key(1)), "Map should not contain the key removed by the iterator.");
+    assertEquals(9, map.size(), "Map should be of size 9.");
+  }
+
   // Value Collection
 
+  @Test
+  public void testValuesIterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 10);
+    assertEquals(this.value(0), map.remove(this.key(0)), "Map should return the value at index 0, when removing the entry.");
+    assertNull(map.put(this.key(10), this.value(10)), "Map should return null when putting a new entry at index 10.");
+    final Set<String> values = new HashSet<>();
+    final Iterator<String> iterator = map.values().iterator();
+    assertThrows(IllegalStateException.class, iterator::remove);
+    while(iterator.hasNext()) {
+      final String value = iterator.next();
+      assertTrue(values.add(value), "Iterator should not return the value " + value + " more than once.");
+      if(value.equals(this.value(1))) {
+        iterator.remove();
+        assertThrows(IllegalStateException.class, iterator::remove);
+      }
+    }
+    assertEquals(10, values.size(), "Iterator should return the 10 values.");
+    assertFalse(values.contains(this.value(0)), "Iterator should not return the removed value.");
+    assertFalse(map.containsValue(this.value(1)), "Map should not contain the value removed by the iterator.");
+    assertEquals(9, map.size(), "Map should be of size 9.");
+  }
+
   @Test
   public void testValuesAddUnsupported() {
     final Map<String, String> map = this.populate(this.createMap(), 3);
@@ -320,6 +505,79 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
     assertThrows(UnsupportedOperationException.class, () -> values.addAll(Lists.newArrayList(this.value(0), this.value(1))));
   }
 
+  // Bulk Operations
+
+  @Test
+  public void testBulkForEach() {
+    for(final long threshold : new long[] { 1, Long.MAX_VALUE }) {
+      final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 1000);
+      assertEquals(this.value(0), map.remove(this.key(0)), "Map should return the value at index 0, when removing the entry.");
+      final Map<String, String> visited = new ConcurrentHashMap<>();
+      map.forEach(threshold, (key, value) -> assertNull(visited.put(key, value), "Map should not visit the key " + key + " more than once."));
+      assertEquals(999, visited.size(), "Map should visit the 999 entries with a value, with a threshold of " + threshold + ".");
+      assertFalse(visited.containsKey(this.key(0)), "Map should not visit the removed entry.");
+    }
+  }
+
+  @Test
+  public void testBulkSearch() {
+    for(final long threshold : new long[] { 1, Long.MAX_VALUE }) {
+      final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 1000);
+      assertEquals(this.value(500), map.search(threshold, (key, value) -> key.equals(this.key(500)) ? value : null), "Map should find the value at index 500, with a threshold of " + threshold + ".");
+      assertNull(map.search(threshold, (key, value) -> null), "Map should return null when nothing is found, with a threshold of " + threshold + ".");
+    }
+  }
+
+  @Test
+  public void testBulkReduce() {
+    for(final long threshold : new long[] { 1, Long.MAX_VALUE }) {
+      final SyncMap<String, String> map = (SyncMap<String, String>) this.populate(this.createMap(), 1000);
+      assertEquals(Integer.valueOf(499_500), map.reduce(threshold, (key, value) -> Integer.parseInt(value), Integer::sum), "Map should sum the 1000 values, with a threshold of " + threshold + ".");
+      assertEquals(Integer.valueOf(250_000), map.reduce(threshold, (key, value) -> Integer.parseInt(value) % 2 != 0 ? Integer.parseInt(value) : null, Integer::sum), "Map should sum the 500 odd values, with a threshold of " + threshold + ".");
+      assertEquals(499_500, map.reduceValuesToLong(threshold, Long::parseLong, 0L, Long::sum), "Map should sum the 1000 values, with a threshold of " + threshold + ".");
+    }
+    assertNull(SyncMap.<String, String>hashmap().reduce(1, (key, value) -> value, (first, second) -> first), "Map should return null when reducing an empty map.");
+  }
+
+  // Spliterator
+
+  @Test
+  public void testEntriesSpliterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    for(int i = 0; i < 1000; i += 2) {
+      assertEquals(this.value(i), map.remove(this.key(i)), "Map should return the value at index " + i + ", when removing the entry.");
+    }
+    final Spliterator<Map.Entry<String, String>> spliterator = map.entrySet().spliterator();
+    assertTrue(spliterator.hasCharacteristics(Spliterator.CONCURRENT | Spliterator.NONNULL | Spliterator.DISTINCT), "Spliterator should be concurrent, non-null and distinct.");
+    assertNotNull(spliterator.trySplit(), "Spliterator should split a map of 1000 entries.");
+    assertEquals(500, map.entrySet().parallelStream().filter(entry -> entry.getKey().equals(entry.getValue())).count(), "Stream should return the 500 entries with a value.");
+  }
+
+  @Test
+  public void testKeysSpliterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    final Set<String> expected = new HashSet<>();
+    for(int i = 0; i < 1000; i++) {
+      if(i % 2 == 0) {
+        assertEquals(this.value(i), map.remove(this.key(i)), "Map should return the value at index " + i + ", when removing the entry.");
+      } else {
+        expected.add(this.key(i));
+      }
+    }
+    assertTrue(map.keySet().spliterator().hasCharacteristics(Spliterator.CONCURRENT | Spliterator.DISTINCT), "Spliterator should be concurrent and distinct.");
+    assertEquals(expected, map.keySet().parallelStream().collect(Collectors.toSet()), "Stream should return the 500 keys with a value.");
+  }
+
+  @Test
+  public void testValuesSpliterator() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    for(int i = 0; i < 1000; i += 2) {
+      assertEquals(this.value(i), map.remove(this.key(i)), "Map should return the value at index " + i + ", when removing the entry.");
+    }
+    assertTrue(map.values().spliterator().hasCharacteristics(Spliterator.CONCURRENT | Spliterator.NONNULL), "Spliterator should be concurrent and non-null.");
+    assertEquals(250_000, map.values().parallelStream().mapToInt(Integer::parseInt).sum(), "Stream should sum the 500 values.");
+  }
+
   // Expunging
 
   @Test
@@ -358,6 +616,287 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
     assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0 for the key at index 0.");
   }
 
+  // Size
+
+  @Test
+  public void testSizeMutations() {
+    final Map<String, String> map = this.populate(this.createMap(), 5);
+    assertEquals(5, map.size(), "Map should be of size 5.");
+    map.remove(this.key(0));
+    map.computeIfPresent(this.key(1), (ignoredKey, ignoredValue) -> null);
+    map.compute(this.key(2), (ignoredKey, ignoredValue) -> null);
+    map.remove(this.key(3), this.value(3));
+    assertEquals(1, map.size(), "Map should be of size 1 after removing 4 entries.");
+    map.put(this.key(0), this.value(0));
+    map.putIfAbsent(this.key(1), this.value(1));
+    map.computeIfAbsent(this.key(2), ignored -> this.value(2));
+    map.compute(this.key(3), (ignoredKey, ignoredValue) -> this.value(3));
+    map.computeIfAbsent(this.key(5), ignored -> null);
+    assertEquals(5, map.size(), "Map should be of size 5 after adding 4 entries back.");
+    map.clear();
+    assertTrue(map.isEmpty(), "Map should be empty after being cleared.");
+    map.put(this.key(0), this.value(0));
+    assertEquals(1, map.size(), "Map should be of size 1 after adding an entry to a cleared map.");
+  }
+
+  // Bulk Load
+
+  @Test
+  public void testBuildPromoted() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().recordStats().build(this.populate(new HashMap<>(), 100));
+    assertEquals(100, map.size(), "Map should be of size 100.");
+    for(int i = 0; i < 100; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertEquals(0, map.stats().misses(), "Map should not record a miss, when reading the loaded entries.");
+    assertEquals(0, map.stats().promotions(), "Map should not promote, when reading the loaded entries.");
+    assertEquals(0, map.stats().locks(), "Map should not lock, when reading the loaded entries.");
+  }
+
+  @Test
+  public void testBuildStriped() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().stripes(4).build(this.populate(new HashMap<>(), 100));
+    assertEquals(100, map.size(), "Map should be of size 100.");
+    for(int i = 0; i < 100; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+  }
+
+  @Test
+  public void testCollector() {
+    final SyncMap<String, String> map = IntStream.range(0, 1000).parallel().boxed()
+      .collect(SyncMap.collector(this::key, this::value));
+    assertEquals(1000, map.size(), "Map should be of size 1000.");
+    for(int i = 0; i < 1000; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertThrows(IllegalStateException.class, () -> IntStream.range(0, 2).boxed().collect(SyncMap.collector(index -> this.key(0), this::value)));
+  }
+
+  // Absent Key Filter
+
+  @Test
+  public void testAbsentKeyFilter() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().absentKeyFilter().recordStats().build();
+    this.populate(map, 1000);
+    for(int i = 1000; i < 2000; i++) {
+      assertNull(map.get(this.key(i)), "Map should return null for the absent key at index " + i + ".");
+      assertFalse(map.containsKey(this.key(i)), "Map should not contain the absent key at index " + i + ".");
+      assertNull(map.remove(this.key(i)), "Map should return null when removing the absent key at index " + i + ".");
+    }
+    assertTrue(map.stats().misses() < 300, "Map should skip the lock for most of the absent keys.");
+    for(int i = 0; i < 1000; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+    }
+    assertEquals(1000, map.size(), "Map should be of size 1000.");
+  }
+
+  @Test
+  public void testAbsentKeyFilterPromoted() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().absentKeyFilter().build();
+    this.populate(map, 10).entrySet().iterator();
+    assertNull(map.put(this.key(10), this.value(10)), "Map should return null when putting a new entry at index 10.");
+    assertEquals(this.value(10), map.get(this.key(10)), "Map should return the value at index 10, when reading it from the dirty map.");
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0, when reading it from the read map.");
+    map.clear();
+    assertNull(map.put(this.key(0), this.value(0)), "Map should return null when putting an entry into the cleared map.");
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0 after the clear.");
+    assertTrue(map.remove(this.key(0), this.value(0)), "Map should remove the entry at index 0 after the clear.");
+  }
+
+  // Promotion Policy
+
+  @Test
+  public void testPromotionPolicies() {
+    final SyncMap.PromotionPolicy[] policies = {
+      SyncMap.PromotionPolicy.dirtySize(),
+      SyncMap.PromotionPolicy.missRatio(0.5D),
+      SyncMap.PromotionPolicy.misses(3),
+      SyncMap.PromotionPolicy.writes(2),
+      SyncMap.PromotionPolicy.elapsed(0, TimeUnit.NANOSECONDS),
+      SyncMap.PromotionPolicy.misses(100).or(SyncMap.PromotionPolicy.writes(5))
+    };
+    for(final SyncMap.PromotionPolicy policy : policies) {
+      final Map<String, String> map = this.populate(SyncMap.of(HashMap<String, SyncMap.ExpungingEntry<String>>::new, 16, policy), 10);
+      for(int i = 0; i < 10; i += 2) {
+        assertEquals(this.value(i), map.remove(this.key(i)), "Map should return the value at index " + i + ", when removing the entry.");
+      }
+      for(int i = 10; i < 20; i++) {
+        assertNull(map.putIfAbsent(this.key(i), this.value(i)), "Map should return null when putting a new entry at index " + i + ".");
+      }
+      for(int i = 0; i < 20; i++) {
+        assertEquals(i < 10 && i % 2 == 0 ? null : this.value(i), map.get(this.key(i)), "Map should return the expected value for the key at index " + i + ".");
+      }
+      assertEquals(15, map.size(), "Map should be of size 15.");
+    }
+  }
+
+  @Test
+  public void testPromotionPolicyShouldPromote() {
+    assertTrue(SyncMap.PromotionPolicy.dirtySize().shouldPromote(4, 0, 4, 0L), "Policy should promote when the misses reach the dirty map size.");
+    assertFalse(SyncMap.PromotionPolicy.dirtySize().shouldPromote(3, 0, 4, 0L), "Policy should not promote when the misses are below the dirty map size.");
+    assertTrue(SyncMap.PromotionPolicy.missRatio(0.5D).shouldPromote(2, 0, 4, 0L), "Policy should promote when the misses reach half the dirty map size.");
+    assertFalse(SyncMap.PromotionPolicy.misses(3).shouldPromote(2, 100, 1, 0L), "Policy should not promote when the misses are below the threshold.");
+    assertTrue(SyncMap.PromotionPolicy.writes(3).shouldPromote(0, 3, 100, 0L), "Policy should promote when the writes reach the threshold.");
+    assertTrue(SyncMap.PromotionPolicy.misses(3).or(SyncMap.PromotionPolicy.writes(3)).shouldPromote(0, 3, 100, 0L), "Policy should promote when either policy would promote.");
+  }
+
+  @Test
+  public void testPromotionPolicyTransferSize() {
+    final Map<String, String> loaded = new HashMap<>();
+    for(int i = 0; i < 1000; i++) {
+      loaded.put(this.key(i), this.value(i));
+    }
+    final SyncMap.PromotionPolicy[] policies = { SyncMap.PromotionPolicy.dirtySize(), SyncMap.PromotionPolicy.missRatio(0.5D) };
+    final int[] thresholds = { 1001, 501 };
+    for(int i = 0; i < policies.length; i++) {
+      // The shared lookups do not move the read entries over, so the dirty
+      // map holds only the first stride of them until the promotion.
+      final SyncMap<String, String> map = SyncMap.<String, String>builder()
+        .promotionPolicy(policies[i])
+        .sharedDirtyReads()
+        .recordStats()
+        .build(loaded);
+      assertNull(map.put(this.key(1000), this.value(1000)), "Map should return null when putting a new entry at index 1000.");
+      for(int j = 1; j < thresholds[i]; j++) {
+        assertEquals(this.value(1000), map.get(this.key(1000)), "Map should return the value at index 1000 from the dirty map.");
+      }
+      assertEquals(0, map.stats().promotions(), "Map should not promote before the misses reach the size of the whole dirty map.");
+      assertEquals(this.value(1000), map.get(this.key(1000)), "Map should return the value at index 1000 from the dirty map.");
+      assertEquals(1, map.stats().promotions(), "Map should promote once the misses reach the size of the whole dirty map.");
+    }
+  }
+
+  @Test
+  public void testPromotionPolicyInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.PromotionPolicy.missRatio(0.0D));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.PromotionPolicy.misses(0));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.PromotionPolicy.writes(0));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.PromotionPolicy.elapsed(-1, TimeUnit.SECONDS));
+  }
+
+  // Transfer
+
+  @Test
+  public void testPromotionExecutor() {
+    final List<Runnable> tasks = new ArrayList<>();
+    final List<Integer> promotions = new ArrayList<>();
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .promotionPolicy(SyncMap.PromotionPolicy.writes(1))
+      .promotionExecutor(tasks::add)
+      .promotionListener((size, duration) -> promotions.add(size))
+      .build();
+    for(int i = 0; i < 10; i++) {
+      assertNull(map.put(this.key(i), this.value(i)), "Map should return null when putting a new entry at index " + i + ".");
+    }
+    assertEquals(1, tasks.size(), "Map should hand off a single promotion to the executor.");
+    assertTrue(promotions.isEmpty(), "Map should not promote until the executor runs the promotion.");
+    for(int i = 0; i < 10; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ", before the promotion.");
+    }
+    tasks.remove(0).run();
+    assertEquals(Lists.newArrayList(10), promotions, "Map should promote all the entries once the executor runs the promotion.");
+    for(int i = 0; i < 10; i++) {
+      assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ", after the promotion.");
+    }
+    assertNull(map.put(this.key(10), this.value(10)), "Map should return null when putting a new entry at index 10.");
+    assertEquals(1, tasks.size(), "Map should hand off another promotion to the executor.");
+  }
+
+  @Test
+  public void testPromotionExecutorRejected() {
+    final List<Integer> promotions = new ArrayList<>();
+    final Map<String, String> map = SyncMap.<String, String>builder()
+      .promotionPolicy(SyncMap.PromotionPolicy.writes(1))
+      .promotionExecutor(task -> {
+        throw new RejectedExecutionException();
+      })
+      .promotionListener((size, duration) -> promotions.add(size))
+      .build();
+    assertNull(map.put(this.key(0), this.value(0)), "Map should return null when putting a new entry at index 0.");
+    assertEquals(Lists.newArrayList(1), promotions, "Map should promote itself when the executor rejects the promotion.");
+    assertEquals(this.value(0), map.get(this.key(0)), "Map should return the value at index 0.");
+  }
+
+  @Test
+  public void testPromotionExecutorPromotions() {
+    final List<Runnable> tasks = new ArrayList<>();
+    final AtomicInteger inlinePromotions = new AtomicInteger();
+    final AtomicInteger backgroundPromotions = new AtomicInteger();
+    final SyncMap<String, String> inline = SyncMap.<String, String>builder()
+      .promotionListener((size, duration) -> inlinePromotions.incrementAndGet())
+      .build();
+    final SyncMap<String, String> background = SyncMap.<String, String>builder()
+      .promotionExecutor(tasks::add)
+      .promotionListener((size, duration) -> backgroundPromotions.incrementAndGet())
+      .build();
+    for(final SyncMap<String, String> map : Lists.newArrayList(inline, background)) {
+      this.populate(map, 1000);
+      while(!tasks.isEmpty()) tasks.remove(0).run();
+      // Iterating promotes the loaded entries into the read map.
+      map.entrySet().iterator();
+      for(int i = 1000; i < 3000; i++) {
+        assertNull(map.put(this.key(i), this.value(i)), "Map should return null when putting a new entry at index " + i + ".");
+        for(int j = 0; j < 3; j++) {
+          assertEquals(this.value(i), map.get(this.key(i)), "Map should return the value at index " + i + ".");
+        }
+        while(!tasks.isEmpty()) tasks.remove(0).run();
+      }
+    }
+    assertTrue(inlinePromotions.get() > 1, "Map should promote, when missing the new entries.");
+    assertEquals(inlinePromotions.get(), backgroundPromotions.get(), "Map should promote as often in the background as inline.");
+  }
+
+  @Test
+  public void testBuilderInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.builder().initialCapacity(-1));
+    assertThrows(IllegalArgumentException.class, () -> SyncMap.builder().stripes(0));
+    assertThrows(NullPointerException.class, () -> SyncMap.builder().promotionExecutor(null));
+  }
+
+  @Test
+  public void testStats() {
+    final SyncMap<String, String> map = SyncMap.<String, String>builder().recordStats().build();
+    this.populate(map, 10).entrySet().iterator();
+    assertEquals(this.value(0), map.remove(this.key(0)), "Map should return the value at index 0, when removing the entry.");
+    assertNull(map.put(this.key(10), this.value(10)), "Map should return null when putting a new entry at index 10.");
+    assertEquals(this.value(10), map.get(this.key(10)), "Map should return the value at index 10.");
+    map.entrySet().iterator();
+    final SyncMap.Stats stats = map.stats();
+    assertEquals(1, stats.misses(), "Map should record a single miss.");
+    assertEquals(2, stats.promotions(), "Map should record two promotions.");
+    assertEquals(2, stats.dirtyRebuilds(), "Map should record two dirty map rebuilds.");
+    assertEquals(1, stats.expunged(), "Map should record a single expunged entry.");
+    assertTrue(stats.locks() > 0, "Map should record the lock acquisitions.");
+    assertTrue(stats.lockTime() >= 0, "Map should record the lock hold time.");
+  }
+
+  @Test
+  public void testStatsDisabled() {
+    final SyncMap<String, String> map = SyncMap.hashmap();
+    this.populate(map, 10).entrySet().iterator();
+    final SyncMap.Stats stats = map.stats();
+    assertEquals(0, stats.locks(), "Map should not record the lock acquisitions.");
+    assertEquals(0, stats.promotions(), "Map should not record the promotions.");
+    assertEquals(0, stats.dirtyRebuilds(), "Map should not record the dirty map rebuilds.");
+  }
+
+  @Test
+  public void testTransferRead() {
+    final Map<String, String> map = this.populate(this.createMap(), 1000);
+    assertEquals(1000, map.size(), "Map should return a size of 1000 after promoting the entries.");
+    for(int i = 0; i < 1000; i += 2) {
+      assertEquals(this.value(i), map.remove(this.key(i)), "Map should return the value at index " + i + ", when removing the entry.");
+    }
+    assertNull(map.put(this.key(1000), this.value(1000)), "Map should return null when putting a new entry, starting a transfer.");
+    assertNull(map.put(this.key(0), this.value(0)), "Map should return null when putting an entry that was removed.");
+    for(int i = 0; i < 1000; i++) {
+      assertEquals(i == 0 || i % 2 != 0 ? this.value(i) : null, map.get(this.key(i)), "Map should return the expected value for the key at index " + i + ".");
+    }
+    assertEquals(502, map.size(), "Map should return a size of 502 after promoting the transferred entries.");
+    assertEquals(this.value(1000), map.get(this.key(1000)), "Map should return the value at index 1000 after the transfer.");
+  }
+
   // Concurrent
 
   @Test
@@ -387,4 +926,252 @@ public class SyncMapTest extends AbstractMapTest<String, String> {
 
     waiter.await(100_000, threadCount);
   }
+
+  @Test
+  public void testConcurrentReadExpunge() throws Throwable {
+    final Map<Integer, String> map = SyncMap.hashmap();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 8;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        // Half of the threads keep removing and adding keys, expunging the
+        // removed entries, while the other half read them.
+        final boolean writer = counter.getAndIncrement() % 2 == 0;
+        final Random random = new Random();
+        for(int i = 0; i < 200_000; i++) {
+          final int key = random.nextInt(64);
+          if(writer) {
+            if(random.nextBoolean()) {
+              map.remove(key);
+            } else {
+              map.put(key, String.valueOf(key));
+            }
+          } else {
+            final Object value = map.get(key);
+            waiter.assertTrue(value == null || value.equals(String.valueOf(key)));
+            waiter.assertTrue(map.getOrDefault(key, "") instanceof String);
+          }
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+  }
+
+  @Test
+  public void testConcurrentPromotionExecutor() throws Throwable {
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final Map<Integer, Boolean> map = SyncMap.<Integer, Boolean>builder()
+      .promotionPolicy(SyncMap.PromotionPolicy.writes(100))
+      .promotionExecutor(executor)
+      .build();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+        }
+        for(int i = 0; i < 10_000; i += 2) {
+          map.remove(offset + i);
+        }
+        for(int i = 0; i < 10_000; i++) {
+          if(map.containsKey(offset + i) != (i % 2 != 0)) {
+            waiter.fail("Map should only contain the odd keys at offset " + offset + ".");
+          }
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS), "Executor should finish the remaining promotions.");
+    assertEquals(threadCount * 5_000, map.size(), "Map should be of size " + (threadCount * 5_000) + ".");
+  }
+
+  @Test
+  public void testConcurrentSharedDirtyReads() throws Throwable {
+    final SyncMap<Integer, Boolean> map = SyncMap.<Integer, Boolean>builder()
+      .sharedDirtyReads()
+      .recordStats()
+      .build();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+          // Reads the new key back from the dirty map, along with a key
+          // another thread may be adding.
+          if(!map.containsKey(offset + i)) {
+            waiter.fail("Map should contain the key " + (offset + i) + ".");
+          }
+          map.get((offset + 10_000 + i) % (threadCount * 10_000));
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals(threadCount * 10_000, map.size(), "Map should be of size " + (threadCount * 10_000) + ".");
+    assertTrue(map.stats().misses() > 0, "Map should record the misses of the shared lookups.");
+    assertTrue(map.stats().promotions() > 0, "Map should promote once the shared lookups missed enough.");
+    for(int i = 0; i < threadCount * 10_000; i++) {
+      assertTrue(map.containsKey(i), "Map should contain the key " + i + ".");
+    }
+  }
+
+  @Test
+  public void testConcurrentFlatCombining() throws Throwable {
+    final SyncMap<Integer, Integer> map = SyncMap.<Integer, Integer>builder()
+      .flatCombining()
+      .build();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int thread = counter.getAndIncrement();
+        for(int i = 0; i < 10_000; i++) {
+          // Every thread adds the same keys, so each key is only absent
+          // for one of them.
+          if(map.putIfAbsent(i, thread) == null) {
+            map.put(10_000 + i, thread);
+          }
+          map.put((thread + 2) * 10_000 + i, thread);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals((threadCount + 2) * 10_000, map.size(), "Map should be of size " + ((threadCount + 2) * 10_000) + ".");
+    for(int i = 0; i < 10_000; i++) {
+      assertEquals(map.get(i), map.get(10_000 + i), "Map should only put the key " + i + " if absent once.");
+    }
+  }
+
+  @Test
+  public void testFlatCombining() {
+    final SyncMap<String, Integer> map = SyncMap.<String, Integer>builder()
+      .flatCombining()
+      .build();
+    assertNull(map.put("foo", 1));
+    assertEquals(Integer.valueOf(1), map.put("foo", 2));
+    assertEquals(Integer.valueOf(2), map.putIfAbsent("foo", 3));
+    assertNull(map.putIfAbsent("bar", 4));
+    assertNull(map.put(null, 5));
+    assertEquals(3, map.size());
+    assertEquals(Integer.valueOf(2), map.get("foo"));
+    assertEquals(Integer.valueOf(4), map.get("bar"));
+    assertEquals(Integer.valueOf(5), map.get(null));
+  }
+
+  @Test
+  public void testConcurrentAbsentKeyFilter() throws Throwable {
+    final SyncMap<Integer, Boolean> map = SyncMap.<Integer, Boolean>builder()
+      .absentKeyFilter()
+      .build();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+          // The new key must be visible to the thread that added it, even
+          // while the filter is rebuilt or reset by a promotion.
+          if(!map.containsKey(offset + i)) {
+            waiter.fail("Map should contain the key " + (offset + i) + ".");
+          }
+          map.get(-(offset + i) - 1);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals(threadCount * 10_000, map.size(), "Map should be of size " + (threadCount * 10_000) + ".");
+  }
+
+  @Test
+  public void testConcurrentSize() throws Throwable {
+    final Map<Integer, Boolean> map = SyncMap.hashmap();
+    final Waiter waiter = new Waiter();
+    final AtomicInteger counter = new AtomicInteger();
+
+    final int threadCount = 10;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        final int offset = counter.getAndIncrement() * 10_000;
+        for(int i = 0; i < 10_000; i++) {
+          map.put(offset + i, Boolean.TRUE);
+        }
+        for(int i = 0; i < 10_000; i += 2) {
+          map.remove(offset + i);
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    assertEquals(threadCount * 5_000, map.size(), "Map should be of size " + (threadCount * 5_000) + ".");
+  }
+
+  @Test
+  public void testConcurrentSizeClear() throws Throwable {
+    final Map<Integer, Boolean> map = SyncMap.hashmap();
+    final Waiter waiter = new Waiter();
+
+    final int threadCount = 8;
+    TestHelper.threadedRun(threadCount, () -> {
+      try {
+        for(int i = 0; i < 100_000; i++) {
+          map.put(i % 64, Boolean.TRUE);
+          map.remove((i + 32) % 64);
+          if(i % 1_000 == 0) map.clear();
+        }
+      } catch (final Exception exception) {
+        waiter.fail(exception);
+      }
+
+      waiter.resume();
+    });
+
+    waiter.await(100_000, threadCount);
+    int present = 0;
+    for(final Boolean ignored : map.values()) present++;
+    assertEquals(present, map.size(), "Map should be of size " + present + ", when cleared while it is written to.");
+  }
 }